@@ -0,0 +1,57 @@
+package svenmeier.coxswain;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import svenmeier.coxswain.metrics.Histogram;
+import svenmeier.coxswain.metrics.Metrics;
+
+/**
+ * Cold start of {@link MainActivity} up to its first frame, reported as a benchmark.
+ */
+public class ColdStartTest extends InstrumentationTestCase {
+
+    public void testFirstFrame() throws InterruptedException {
+        Instrumentation instrumentation = getInstrumentation();
+
+        Intent intent = new Intent(Intent.ACTION_MAIN);
+        intent.setClassName(instrumentation.getTargetContext(), MainActivity.class.getName());
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+
+        long start = System.nanoTime();
+        Activity activity = instrumentation.startActivitySync(intent);
+        instrumentation.waitForIdleSync();
+        long launched = System.nanoTime() - start;
+
+        Histogram firstFrame = (Histogram) Metrics.get("main.first-frame");
+        assertNotNull(firstFrame);
+        assertEquals(1, firstFrame.getCount());
+
+        // initialization continues in the background
+        final CountDownLatch initialized = new CountDownLatch(1);
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Gym.instance(getInstrumentation().getTargetContext()).whenInitialized(new Runnable() {
+                    @Override
+                    public void run() {
+                        initialized.countDown();
+                    }
+                });
+            }
+        });
+        assertTrue(initialized.await(60, TimeUnit.SECONDS));
+        Histogram initialize = Metrics.histogram("gym.initialize");
+
+        Log.i(Coxswain.TAG, String.format("cold start: first frame %d ms, launch %d ms, gym initialization %d ms",
+                firstFrame.getMax() / 1000000, launched / 1000000, initialize.getMax() / 1000000));
+
+        activity.finish();
+    }
+}
@@ -24,6 +24,8 @@ import android.content.Context;
 import android.os.Build;
 import androidx.annotation.RequiresApi;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
 public class CompactService extends JobService {
 
@@ -33,6 +35,8 @@ public class CompactService extends JobService {
 
     private Gym gym;
 
+    private Compacter compacter;
+
     @Override
     public void onCreate() {
         gym = Gym.instance(this);
@@ -41,7 +45,8 @@ public class CompactService extends JobService {
     @Override
     public boolean onStartJob(JobParameters jobParameters) {
 
-        new Thread(new Compacter(jobParameters)).start();
+        compacter = new Compacter(jobParameters);
+        new Thread(compacter).start();
 
         // asynchronous
         return true;
@@ -51,21 +56,29 @@ public class CompactService extends JobService {
 
         private final JobParameters parameters;
 
+        private final AtomicBoolean stopped = new AtomicBoolean();
+
         public Compacter(JobParameters jobParameters) {
             this.parameters = jobParameters;
         }
 
         @Override
         public void run() {
-            gym.compact(WORKOUT_COUNT);
-
-            jobFinished(parameters, false);
+            if (gym.compact(WORKOUT_COUNT, stopped)) {
+                jobFinished(parameters, false);
+            }
         }
     }
 
     @Override
     public boolean onStopJob(JobParameters jobParameters) {
-        return false;
+        if (compacter != null) {
+            compacter.stopped.set(true);
+            compacter = null;
+        }
+
+        // resume later on
+        return true;
     }
 
     public static void setup(Context context) {
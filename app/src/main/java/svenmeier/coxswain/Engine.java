@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+/**
+ * The rowing engine - a dedicated thread processing the session, i.e. measurements and strokes
+ * of the rower, the progress of the current workout and motivation.
+ * <p>
+ * The main thread is left to rendering, it receives the results in immutable
+ * {@link Gym.Frame}s only.
+ */
+public class Engine {
+
+    private static Handler handler;
+
+    private Engine() {
+    }
+
+    /**
+     * Get a handler of the engine thread, which is started on first access.
+     */
+    public static synchronized Handler getHandler() {
+        if (handler == null) {
+            HandlerThread thread = new HandlerThread("engine", Process.THREAD_PRIORITY_DISPLAY);
+            thread.start();
+
+            handler = new Handler(thread.getLooper());
+        }
+
+        return handler;
+    }
+}
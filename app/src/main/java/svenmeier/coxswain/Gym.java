@@ -18,12 +18,22 @@ package svenmeier.coxswain;
 import android.content.Context;
 import android.location.Location;
 import android.location.LocationManager;
+import android.os.Handler;
+import android.os.Looper;
 import androidx.annotation.UiThread;
 import android.util.Log;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import propoid.core.Propoid;
 import propoid.db.LookupException;
@@ -40,10 +50,17 @@ import propoid.util.content.Preference;
 import svenmeier.coxswain.gym.Difficulty;
 import svenmeier.coxswain.gym.Measurement;
 import svenmeier.coxswain.gym.Program;
+import svenmeier.coxswain.gym.Rollup;
 import svenmeier.coxswain.gym.Segment;
 import svenmeier.coxswain.gym.Snapshot;
+import svenmeier.coxswain.gym.Stroke;
+import svenmeier.coxswain.gym.StrokeRecords;
+import svenmeier.coxswain.gym.Track;
 import svenmeier.coxswain.gym.Workout;
 import svenmeier.coxswain.io.Export;
+import svenmeier.coxswain.metrics.Counter;
+import svenmeier.coxswain.metrics.Histogram;
+import svenmeier.coxswain.metrics.Metrics;
 
 import static propoid.db.Where.all;
 import static propoid.db.Where.equal;
@@ -52,6 +69,18 @@ import static propoid.db.Where.lessThan;
 
 public class Gym {
 
+    private static final String JOURNAL_FILE = "snapshots.journal";
+
+    private static final Histogram PROCESS = Metrics.histogram("gym.process");
+
+    private static final Histogram DELIVERY = Metrics.histogram("gym.delivery");
+
+    private static final Counter CONFLATED = Metrics.counter("gym.conflated");
+
+    private static final Histogram INITIALIZE = Metrics.histogram("gym.initialize");
+
+    private static final Histogram MAINTAIN = Metrics.histogram("gym.maintain");
+
     private static Gym instance;
 
     private Context context;
@@ -60,76 +89,206 @@ public class Gym {
 
     private Repository repository;
 
-    private List<Listener> listeners = new ArrayList<>();
+    private GymLocator locator;
+
+    private Rollups rollups;
+
+    private SnapshotJournal journal;
+
+    private SnapshotWriter writer;
+
+    /**
+     * Subscriptions to live measurements.
+     */
+    public final Topic<MeasurementListener> measurements = new Topic<>();
+
+    /**
+     * Subscriptions to the selection of programs.
+     */
+    public final Topic<SelectionListener> selections = new Topic<>();
+
+    /**
+     * Subscriptions to persisted and deleted workouts.
+     */
+    public final Topic<WorkoutListener> workouts = new Topic<>();
+
+    /**
+     * Subscriptions to edited programs.
+     */
+    public final Topic<ProgramListener> programs = new Topic<>();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
 
     /**
      * The last measurement.
      */
     private Measurement measurement = new Measurement();
 
+    /**
+     * Frame published by the engine but not yet delivered to the main thread.
+     */
+    private final AtomicReference<Frame> published = new AtomicReference<>();
+
+    private final Runnable deliver = new Runnable() {
+        @Override
+        public void run() {
+            Frame frame = published.getAndSet(null);
+            if (frame == null) {
+                // dropped on reset
+                return;
+            }
+
+            long start = System.nanoTime();
+
+            Gym.this.frame = frame;
+            fireMeasured(frame);
+
+            DELIVERY.record(System.nanoTime() - start);
+        }
+    };
+
+    /**
+     * The last frame delivered to the main thread.
+     */
+    private volatile Frame frame = new Frame(measurement, Measurement.ALL, Event.ACKNOWLEDGED, null);
+
     /**
      * The selected program.
      */
-    public Program program;
+    public volatile Program program;
 
 	/**
      * Optional pace workout.
      */
-    public Workout pace;
+    public volatile Workout pace;
 
 	/**
      * The current workout.
      */
-    public Workout current;
+    public volatile Workout current;
 
 	/**
      * Progress of current workout.
      */
-    public Progress progress;
+    public volatile Progress progress;
+
+    /**
+     * Workouts started before are not in progress.
+     */
+    private final long created = System.currentTimeMillis();
+
+    /**
+     * Opens and initializes the repository off the main thread - kept short, since queries wait
+     * for it. Whatever has to be done before a workout writes to the repository is done here too.
+     */
+    private final FutureTask<Void> initialization = new FutureTask<Void>(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+            long start = System.nanoTime();
+
+            open();
+            initialize();
+
+            INITIALIZE.record(System.nanoTime() - start);
+            return null;
+        }
+    }) {
+        @Override
+        protected void done() {
+            List<Runnable> runnables;
+            synchronized (Gym.this) {
+                runnables = initialized;
+                initialized = null;
+            }
+
+            for (Runnable runnable : runnables) {
+                handler.post(runnable);
+            }
+        }
+    };
+
+    private final Thread initializer = new Thread(new Runnable() {
+        @Override
+        public void run() {
+            initialization.run();
+
+            try {
+                initialization.get();
+            } catch (Exception notInitialized) {
+                Log.e(Coxswain.TAG, "cannot initialize gym", notInitialized);
+                return;
+            }
+
+            try {
+                maintain();
+            } catch (RuntimeException ex) {
+                Log.e(Coxswain.TAG, "cannot maintain gym", ex);
+            }
+        }
+    }, "gym");
+
+    /**
+     * Runnables waiting for the initialization, {@code null} when completed.
+     */
+    private List<Runnable> initialized = new ArrayList<>();
 
     private Gym(final Context context) {
 
         this.context = context;
 
-        repository = new Repository(context, new GymLocator(context), new GymVersioning());
-
         external = Preference.getBoolean(context, R.string.preference_data_external);
         external.listen(new Preference.OnChangeListener() {
             @Override
             public void onChanged() {
-                repository.close();
-
-                repository.open();
-
-                fireChanged(null);
+                // reopen on the writer thread once all pending rows are written
+                writer().flush(new Runnable() {
+                    @Override
+                    public void run() {
+                        repository().close();
+
+                        repository().open();
+
+                        // everything changed
+                        fireSelected();
+                    }
+                });
             }
         });
     }
 
-    void initialize() {
+    private void open() {
+        locator = new GymLocator(context);
+        repository = new Repository(context, locator, new GymVersioning());
+        rollups = new Rollups(repository);
+
+        try {
+            journal = new SnapshotJournal(new File(context.getFilesDir(), JOURNAL_FILE));
+        } catch (IOException ex) {
+            Log.e(Coxswain.TAG, "cannot open journal", ex);
+        }
+
+        writer = new SnapshotWriter(repository, journal);
+    }
+
+    private void initialize() {
         // programs cascade to their segments
-        ((DefaultCascading) repository.cascading).setCascaded(new Program().segments);
+        ((DefaultCascading) repository().cascading).setCascaded(new Program().segments);
 
-        // index workout by start
-        Workout workoutIndex = new Workout();
-        repository.index(workoutIndex, false, Order.descending(workoutIndex.start));
+        // indices are created by versioning, tables of a new database are created later on
+        locator.index();
 
-        // index snapshots by workout
-        Snapshot snapshotIndex = new Snapshot();
-        repository.index(snapshotIndex, false, Order.ascending(snapshotIndex.workout));
-        
-        Match<Program> query = repository.query(new Program());
+        Match<Program> query = repository().query(new Program());
         if (query.count() == 0) {
-            repository.insert(Program.meters(String.format(context.getString(R.string.distance_meters), 500), 500, Difficulty.EASY));
-            repository.insert(Program.meters(String.format(context.getString(R.string.distance_meters), 1000), 1000, Difficulty.EASY));
-            repository.insert(Program.meters(String.format(context.getString(R.string.distance_meters), 2000), 2000, Difficulty.MEDIUM));
+            repository().insert(Program.meters(String.format(context.getString(R.string.distance_meters), 500), 500, Difficulty.EASY));
+            repository().insert(Program.meters(String.format(context.getString(R.string.distance_meters), 1000), 1000, Difficulty.EASY));
+            repository().insert(Program.meters(String.format(context.getString(R.string.distance_meters), 2000), 2000, Difficulty.MEDIUM));
 
-            repository.insert(Program.kilocalories(String.format(context.getString(R.string.energy_kilocalories), 200), 200, Difficulty.MEDIUM));
+            repository().insert(Program.kilocalories(String.format(context.getString(R.string.energy_kilocalories), 200), 200, Difficulty.MEDIUM));
 
-            repository.insert(Program.minutes(String.format(context.getString(R.string.duration_minutes), 5), 5, Difficulty.EASY));
-            repository.insert(Program.minutes(String.format(context.getString(R.string.duration_minutes), 10), 10, Difficulty.MEDIUM));
+            repository().insert(Program.minutes(String.format(context.getString(R.string.duration_minutes), 5), 5, Difficulty.EASY));
+            repository().insert(Program.minutes(String.format(context.getString(R.string.duration_minutes), 10), 10, Difficulty.MEDIUM));
 
-            repository.insert(Program.strokes(String.format(context.getString(R.string.strokes_count), 500), 500, Difficulty.MEDIUM));
+            repository().insert(Program.strokes(String.format(context.getString(R.string.strokes_count), 500), 500, Difficulty.MEDIUM));
 
             Program program = new Program(context.getString(R.string.program_name_segments));
             program.getSegment(0).setDistance(1000);
@@ -141,62 +300,236 @@ public class Gym {
             program.addSegment(new Segment(Difficulty.EASY).setDistance(1000));
             program.addSegment(new Segment(Difficulty.HARD).setDuration(60).setStrokeRate(30));
             program.addSegment(new Segment(Difficulty.EASY).setDistance(1000));
-            repository.insert(program);
+            repository().insert(program);
+        }
+
+        // before any workout updates its rollups
+        rollups.backfill();
+
+        // before the writer journals snapshots of a new workout
+        replayJournal();
+    }
+
+    /**
+     * Maintain the repository once initialized - queries do not wait for it.
+     */
+    private void maintain() {
+        long start = System.nanoTime();
+
+        warmPrograms();
+
+        // snapshots of finished workouts go into tracks
+        writer().migrate(created);
+
+        MAINTAIN.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Load all programs with their segments once, so the first list of programs hits warm caches.
+     */
+    private void warmPrograms() {
+        for (Program program : repository().query(new Program()).list()) {
+            program.getSegments();
+        }
+    }
+
+    /**
+     * Wait for the initialization to complete - but not on the initializing thread itself.
+     */
+    private void await() {
+        if (Thread.currentThread() == initializer) {
+            return;
+        }
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                initialization.get();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("gym not initialized", ex.getCause());
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
     }
 
     /**
-     * Compact workouts.
+     * Get the repository, waiting for the initialization to complete.
+     */
+    private Repository repository() {
+        await();
+
+        return repository;
+    }
+
+    /**
+     * Get the writer, waiting for the initialization to complete.
+     */
+    private SnapshotWriter writer() {
+        await();
+
+        return writer;
+    }
+
+    /**
+     * Run on the main thread as soon as the initialization is completed, i.e. queries will not
+     * have to wait.
+     */
+    @UiThread
+    public void whenInitialized(Runnable runnable) {
+        synchronized (this) {
+            if (initialized != null) {
+                initialized.add(runnable);
+                return;
+            }
+        }
+
+        runnable.run();
+    }
+
+    /**
+     * Replay snapshots that were journaled but not committed, e.g. because the process was killed.
+     */
+    private void replayJournal() {
+        if (journal == null) {
+            return;
+        }
+
+        final List<SnapshotJournal.Record> records = journal.pendingRecords();
+        if (records.isEmpty()) {
+            return;
+        }
+
+        repository().transactional(new Transaction() {
+            @Override
+            public void doTransactional() {
+                Workout prototype = new Workout();
+
+                Workout workout = null;
+                int persisted = 0;
+                for (SnapshotJournal.Record record : records) {
+                    if (workout == null || workout.start.get() != record.workout) {
+                        if (workout != null) {
+                            repository().merge(workout);
+                            rollups.update(workout);
+
+                            fireWorkoutPersisted(workout);
+                        }
+                        workout = repository().query(prototype, equal(prototype.start, record.workout)).first();
+                        if (workout == null) {
+                            // deleted meanwhile
+                            continue;
+                        }
+                        persisted = workout.duration.get();
+                    }
+
+                    if (record.isCommitted(persisted)) {
+                        continue;
+                    }
+
+                    try {
+                        workout.onMeasured(record.measurement);
+                    } catch (IllegalArgumentException ex) {
+                        Log.d(Coxswain.TAG, "illegal journaled measurement " + ex.getMessage());
+                    }
+
+                    Snapshot snapshot = new Snapshot(record.measurement);
+                    snapshot.workout.set(workout);
+                    repository().insert(snapshot);
+                }
+
+                if (workout != null) {
+                    repository().merge(workout);
+                    rollups.update(workout);
+
+                    fireWorkoutPersisted(workout);
+                }
+            }
+        });
+
+        journal.committed(records.get(records.size() - 1).sequence + 1);
+
+        Log.d(Coxswain.TAG, "replayed " + records.size() + " journaled snapshots");
+    }
+
+    /**
+     * Compact old workouts, downsampling their tracks to {@link Track#COARSE}.
+     * <p>
+     * Each workout is compacted in its own transaction, followed by an incremental vacuum, so
+     * compaction can be stopped between workouts - a following call resumes with the workouts
+     * not compacted yet.
+     * <p>
+     * The first compaction switches the repository to incremental vacuum, which vacuums it fully
+     * once - thus this is not done on startup.
      *
      * @param count maximum count of workouts to compact
+     * @param stopped flag to stop compaction
+     * @return {@code false} if stopped
      */
-    public void compact(int count) {
+    public boolean compact(int count, AtomicBoolean stopped) {
+        await();
+
+        locator.incremental();
+
         int days = Preference.getInt(context, R.string.preference_compact).fallback(180).get();
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.DATE, -days);
         Workout workout = new Workout();
-        Snapshot snapshot = new Snapshot();
+        final Track track = new Track();
         Where where =
                 Where.all(
                     Where.lessEqual(workout.start, calendar.getTimeInMillis()),
-                        Where.is(snapshot.workout, Where.any())
+                    Where.is(track.workout, Where.lessThan(track.resolution, Track.COARSE))
                 );
-        for (Workout compact : repository.query(workout, where).list(Range.limit(count), Order.ascending(workout.start))) {
-            repository.query(snapshot, Where.equal(snapshot.workout, compact)).delete();
+        for (final Workout compact : repository().query(workout, where).list(Range.limit(count), Order.ascending(workout.start))) {
+            if (stopped.get()) {
+                return false;
+            }
+
+            repository().transactional(new Transaction() {
+                @Override
+                public void doTransactional() {
+                    for (Track fine : repository().query(track, Where.equal(track.workout, compact)).list()) {
+                        fine.downsample(Track.COARSE);
+
+                        repository().merge(fine);
+                    }
+                }
+            });
+
+            locator.vacuum();
         }
 
-        repository.vacuum();
+        return true;
     }
 
     /**
-     * Add a listener - has to be called on main thread.
-     * 
-     * @param listener listener of changes in the gym
+     * Get the last frame delivered to the main thread.
      */
-    @UiThread
-    public void addListener(Listener listener) {
-        listeners.add(listener);
-    }
-
-    public void removeListener(Listener listener) {
-        listeners.remove(listener);
+    public Frame getFrame() {
+        return frame;
     }
 
     public Match<Program> getPrograms() {
-        return repository.query(new Program());
+        return repository().query(new Program());
     }
 
     public Program getProgram(Reference<Program> reference) {
-        return repository.lookup(reference);
+        return repository().lookup(reference);
     }
 
     public <P extends Propoid> P get(Reference<P> reference) {
-        return repository.lookup(reference);
+        return repository().lookup(reference);
     }
 
     public void add(final String programName, final Workout workout, final List<Snapshot> snapshots) {
 
-        repository.transactional(new Transaction() {
+        repository().transactional(new Transaction() {
             @Override
             public void doTransactional() {
                 Program example = new Program();
@@ -204,35 +537,36 @@ public class Gym {
                 // imported workouts are not evaluated by default
                 workout.evaluate.set(false);
 
-                workout.program.set(repository.query(example, equal(example.name, programName)).first());
-                repository.merge(workout);
+                workout.program.set(repository().query(example, equal(example.name, programName)).first());
+                repository().merge(workout);
+                rollups.update(workout);
 
-                for (Snapshot snapshot : snapshots) {
-                    snapshot.workout.set(workout);
-
-                    repository.merge(snapshot);
-                }
+                repository().insert(new Track(workout, snapshots));
             }
         });
+
+        fireWorkoutPersisted(workout);
     }
 
     public void mergeProgram(Program program) {
-        repository.merge(program);
+        repository().merge(program);
+
+        fireProgramEdited(program);
     }
 
     public void mergeSegment(Segment segment) {
-        repository.merge(segment);
+        repository().merge(segment);
     }
 
     public Match<Workout> getWorkouts() {
         Workout prototype = new Workout();
 
         if (program == null) {
-            return repository.query(prototype);
+            return repository().query(prototype);
         } else if (Row.getID(program) == Row.TRANSIENT) {
-            return repository.query(prototype, Where.none());
+            return repository().query(prototype, Where.none());
         } else {
-            return repository.query(prototype, Where.equal(prototype.program, program));
+            return repository().query(prototype, Where.equal(prototype.program, program));
         }
     }
 
@@ -241,15 +575,15 @@ public class Gym {
 
         // evaluated workouts only
         if (program == null) {
-            return repository.query(prototype, all(
+            return repository().query(prototype, all(
                     equal(prototype.evaluate, true),
                     greaterEqual(prototype.start, from),
                     lessThan(prototype.start, to))
             );
         } else if (Row.getID(program) == Row.TRANSIENT) {
-            return repository.query(prototype, Where.none());
+            return repository().query(prototype, Where.none());
         } else  {
-            return repository.query(prototype, all(
+            return repository().query(prototype, all(
                     equal(prototype.program, program),
                     equal(prototype.evaluate, true),
                     greaterEqual(prototype.start, from),
@@ -258,56 +592,195 @@ public class Gym {
         }
     }
 
+    /**
+     * Get the daily rollups of evaluated workouts, either of the selected program or overall.
+     */
+    public Match<Rollup> getRollups(long from, long to) {
+        Rollup prototype = new Rollup();
+
+        if (program == null) {
+            return repository().query(prototype, all(
+                    equal(prototype.overall, true),
+                    greaterEqual(prototype.day, from),
+                    lessThan(prototype.day, to))
+            );
+        } else if (Row.getID(program) == Row.TRANSIENT) {
+            return repository().query(prototype, Where.none());
+        } else  {
+            return repository().query(prototype, all(
+                    equal(prototype.program, program),
+                    greaterEqual(prototype.day, from),
+                    lessThan(prototype.day, to))
+            );
+        }
+    }
+
+    /**
+     * Aggregate evaluated workouts into consecutive buckets, with a single query for the daily
+     * rollups of all buckets.
+     *
+     * @param boundaries ascending boundaries of the buckets, i.e. one more than the count of
+     *                   buckets
+     * @return aggregate of each bucket
+     * @see #getRollups(long, long)
+     */
+    public Rollup[] aggregate(long[] boundaries) {
+        Rollup[] aggregates = new Rollup[boundaries.length - 1];
+        for (int b = 0; b < aggregates.length; b++) {
+            aggregates[b] = new Rollup();
+        }
+
+        for (Rollup rollup : getRollups(boundaries[0], boundaries[aggregates.length]).list()) {
+            int bucket = Arrays.binarySearch(boundaries, rollup.day.get());
+            if (bucket < 0) {
+                // before insertion point
+                bucket = -bucket - 2;
+            }
+
+            aggregates[bucket].add(rollup);
+        }
+
+        return aggregates;
+    }
+
     public void delete(Propoid propoid) {
         if (propoid instanceof Workout) {
-            // delete all snapshots of workout
-            Snapshot prototype = new Snapshot();
-            repository.query(prototype, equal(prototype.workout, (Workout) propoid)).delete();
+            final Workout workout = (Workout) propoid;
+
+            // pending snapshots might belong to the workout, delete on the writer thread once written
+            writer().flush(new Runnable() {
+                @Override
+                public void run() {
+                    deleteNow(workout);
+                }
+            });
+            return;
         }
 
-        repository.delete(propoid);
+        if (propoid instanceof Program) {
+            rollups.delete((Program) propoid);
+        }
+
+        long id = Row.getID(propoid);
+        repository().delete(propoid);
 
         if (propoid instanceof Program) {
+            fireProgramEdited(id);
+
             // keep one program at least
-            if (repository.query(propoid).count() == 0) {
+            if (repository().query(propoid).count() == 0) {
                 newProgram();
             }
         }
     }
 
-    public void mergeWorkout(Workout workout) {
-        repository.merge(workout);
+    private void deleteNow(final Workout workout) {
+        final long id = Row.getID(workout);
+        final long start = workout.start.get();
+        repository().transactional(new Transaction() {
+            @Override
+            public void doTransactional() {
+                // delete all snapshots of workout
+                Snapshot prototype = new Snapshot();
+                repository().query(prototype, equal(prototype.workout, workout)).delete();
+
+                Track track = new Track();
+                repository().query(track, equal(track.workout, workout)).delete();
+
+                StrokeRecords records = new StrokeRecords();
+                repository().query(records, equal(records.workout, workout)).delete();
+
+                repository().delete(workout);
+
+                rollups.update(workout);
+            }
+        });
+
+        fireWorkoutDeleted(id, start);
+    }
+
+    public void mergeWorkout(final Workout workout) {
+        repository().transactional(new Transaction() {
+            @Override
+            public void doTransactional() {
+                repository().merge(workout);
+
+                rollups.update(workout);
+            }
+        });
+
+        fireWorkoutPersisted(workout);
     }
 
+    /**
+     * Write all pending snapshots of the current workout, waiting for the writer - not to be
+     * called on the main thread.
+     */
+    public void flush() {
+        writer().flush();
+    }
+
+    /**
+     * Deselect the program, archiving the current workout on the writer thread - does not wait
+     * for it, so it can be called from any thread.
+     */
     public void deselect() {
-        if (current != null) {
-            Export.start(context, current);
-        }
+        deselect(null);
+    }
 
-        if (program != null) {
-            this.pace = null;
-            this.program = null;
+    /**
+     * Deselect the given program, unless another one was selected meanwhile.
+     *
+     * @param selected program to deselect, {@code null} for any
+     * @see #deselect()
+     */
+    public void deselect(Program selected) {
+        final Workout workout;
+        synchronized (this) {
+            if (selected != null && selected != program) {
+                return;
+            }
+
+            workout = current;
+
+            if (program != null) {
+                this.pace = null;
+                this.program = null;
+
+                reset();
 
-            this.measurement = new Measurement();
-            this.current = null;
-            this.progress = null;
+                fireSelected();
+            }
+        }
 
-            fireChanged(null);
+        if (workout != null) {
+            writer().archive(workout, new Runnable() {
+                @Override
+                public void run() {
+                    onMain(new Runnable() {
+                        @Override
+                        public void run() {
+                            Export.start(context, workout);
+                        }
+                    });
+
+                    // flushed with its rollups
+                    fireWorkoutPersisted(workout);
+                }
+            });
         }
     }
 
-    public void select(Program program) {
+    public synchronized void select(Program program) {
         this.pace = null;
         this.program = program;
 
-        this.measurement = new Measurement();
-        this.current = null;
-        this.progress = null;
+        reset();
 
-        fireChanged(null);
+        fireSelected();
     }
 
-    public void repeat(Workout pace) {
+    public synchronized void repeat(Workout pace) {
         Program program;
         try {
             program = pace.program.get();
@@ -320,30 +793,43 @@ public class Gym {
         this.pace = pace;
         this.program = program;
 
-        this.measurement = new Measurement();
-        this.current = null;
-        this.progress = null;
+        reset();
 
-        fireChanged(null);
+        fireSelected();
     }
 
-    public void challenge(Workout pace) {
+    public synchronized void challenge(Workout pace) {
         this.pace = pace;
         this.program = Program.meters(context.getString(R.string.action_challenge), pace.distance.get(), Difficulty.NONE);
 
+        reset();
+
+        fireSelected();
+    }
+
+    /**
+     * Reset the session, dropping a frame not delivered yet.
+     */
+    private void reset() {
         this.measurement = new Measurement();
         this.current = null;
         this.progress = null;
 
-        fireChanged(null);
+        published.set(null);
+        this.frame = new Frame(measurement, Measurement.ALL, Event.ACKNOWLEDGED, null);
     }
 
 	/**
-     * A new measurement.
+     * A new measurement - to be called on the {@link Engine} thread, listeners are notified with
+     * a {@link Frame} on the main thread.
      *
      * @param measurement the measurement
+     * @param changed mask of changed values
+     * @return the published frame with the event and progress of this measurement
      */
-    public Event onMeasured(Measurement measurement) {
+    public synchronized Frame onMeasured(Measurement measurement, int changed) {
+        long start = System.nanoTime();
+
         Event event = Event.ACKNOWLEDGED;
 
         this.measurement = measurement;
@@ -358,9 +844,39 @@ public class Gym {
             }
         }
 
-        fireChanged(measurement);
+        Frame frame = new Frame(measurement, changed, event, progress);
+        publish(frame);
 
-        return event;
+        PROCESS.record(System.nanoTime() - start);
+
+        return frame;
+    }
+
+    /**
+     * Publish a frame to the main thread, conflating it with a frame not delivered yet.
+     */
+    private void publish(Frame frame) {
+        Frame previous;
+        Frame next;
+        do {
+            previous = published.get();
+            next = previous == null ? frame : previous.conflate(frame);
+        } while (published.compareAndSet(previous, next) == false);
+
+        if (previous == null) {
+            handler.post(deliver);
+        } else {
+            CONFLATED.increment();
+        }
+    }
+
+    /**
+     * A stroke captured by the rower - recorded while a workout is in progress.
+     */
+    public synchronized void onStroke(Stroke stroke) {
+        if (current != null && progress != null) {
+            writer().insert(current, stroke);
+        }
     }
 
     private Event analyse(Measurement measurement) {
@@ -387,20 +903,19 @@ public class Gym {
 
         seconds = (current.duration.get() - seconds);
         if (seconds > 0) {
-            mergeWorkout(current);
+            // merged with each snapshot
 
             // limit snapshots so this does not take forever
             for (seconds = Math.min(seconds, 10); seconds > 0; seconds--) {
-                Snapshot snapshot = new Snapshot(measurement);
-                snapshot.workout.set(current);
-                repository.insert(snapshot);
+                writer().insert(current, measurement);
             }
         }
 
         if (progress != null && progress.completion() == 1.0f) {
             Segment next = program.getNextSegment(progress.segment);
             if (next == null) {
-                mergeWorkout(current);
+                // committed at the latest when archived on deselect
+                writer().merge(current);
 
                 progress = null;
 
@@ -415,10 +930,48 @@ public class Gym {
         return event;
     }
 
-    public Match<Snapshot> getSnapshots(Workout workout) {
+    /**
+     * Get all snapshots of a workout.
+     *
+     * @see #getSnapshots(Workout, int, int)
+     */
+    public List<Snapshot> getSnapshots(Workout workout) {
+        return getSnapshots(workout, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get a range of snapshots of a workout, decoded from its track once the workout is finished.
+     *
+     * @param from index of first snapshot, inclusive
+     * @param to index of last snapshot, exclusive
+     */
+    public List<Snapshot> getSnapshots(Workout workout, int from, int to) {
+        // rows first, a workout might be archived into a track meanwhile
         Snapshot prototype = new Snapshot();
+        List<Snapshot> snapshots = repository().query(prototype, equal(prototype.workout, workout)).list(Range.limit(to), Order.ascendingByInsert());
+        if (snapshots.isEmpty() == false) {
+            return snapshots.subList(Math.min(from, snapshots.size()), snapshots.size());
+        }
+
+        Track track = new Track();
+        track = repository().query(track, equal(track.workout, workout)).first();
+        if (track == null) {
+            return snapshots;
+        }
+        return track.getSnapshots(from, to);
+    }
+
+    /**
+     * Get all strokes of a workout, in the order they were captured.
+     */
+    public List<Stroke> getStrokes(Workout workout) {
+        StrokeRecords prototype = new StrokeRecords();
 
-        return repository.query(prototype, equal(prototype.workout, workout));
+        List<Stroke> strokes = new ArrayList<>();
+        for (StrokeRecords records : repository().query(prototype, equal(prototype.workout, workout)).list(Range.limit(Integer.MAX_VALUE), Order.ascending(prototype.first))) {
+            strokes.addAll(records.getStrokes());
+        }
+        return strokes;
     }
 
     public Location getLocation() {
@@ -455,7 +1008,7 @@ public class Gym {
 
         final Program duplicate = new Program(context.getString(R.string.program_name_new));
 
-        repository.transactional(new Transaction() {
+        repository().transactional(new Transaction() {
             @Override
             public void doTransactional() {
                 duplicate.getSegments().clear();
@@ -464,9 +1017,12 @@ public class Gym {
                     duplicate.addSegment(segment.duplicate());
                 }
 
-                repository.merge(duplicate);
+                repository().merge(duplicate);
             }
         });
+
+        fireProgramEdited(duplicate);
+
         return duplicate;
     }
 
@@ -510,13 +1066,13 @@ public class Gym {
         }
 
         public boolean inLimit() {
-            if (measurement.getSpeed() < progress.segment.speed.get()) {
+            if (measurement.getSpeed() < segment.speed.get()) {
                 return false;
-            } else if (measurement.getPulse() < progress.segment.pulse.get()) {
+            } else if (measurement.getPulse() < segment.pulse.get()) {
                 return false;
-            } else if (measurement.getStrokeRate() < progress.segment.strokeRate.get()) {
+            } else if (measurement.getStrokeRate() < segment.strokeRate.get()) {
                 return false;
-			} else if (measurement.getPower() < progress.segment.power.get()) {
+			} else if (measurement.getPower() < segment.power.get()) {
 				return false;
             }
 
@@ -569,12 +1125,140 @@ public class Gym {
         }
     }
 
-    private void fireChanged(Object scope) {
-        for (Listener listener : listeners) {
-            listener.changed(scope);
+    /**
+     * Immutable result of a measurement processed by the engine, handed to the main thread.
+     */
+    public static class Frame {
+
+        public final Measurement measurement;
+
+        /**
+         * Mask of values changed since the previous frame.
+         */
+        public final int changed;
+
+        /**
+         * The most important event since the previous frame.
+         */
+        public final Event event;
+
+        /**
+         * Progress at the time of the measurement, {@code null} if not in a workout.
+         */
+        public final Progress progress;
+
+        /**
+         * @see Progress#achieved()
+         */
+        public final int achieved;
+
+        /**
+         * @see Progress#completion()
+         */
+        public final float completion;
+
+        Frame(Measurement measurement, int changed, Event event, Progress progress) {
+            this.measurement = new Measurement(measurement);
+            this.changed = changed;
+            this.event = event;
+            this.progress = progress;
+
+            if (progress == null) {
+                this.achieved = 0;
+                this.completion = 0;
+            } else {
+                this.achieved = progress.achieved();
+                this.completion = progress.completion();
+            }
+        }
+
+        private Frame(Frame previous, Frame next) {
+            this.measurement = next.measurement;
+            this.changed = previous.changed | next.changed;
+            this.event = next.event == Event.ACKNOWLEDGED ? previous.event : next.event;
+            this.progress = next.progress;
+            this.achieved = next.achieved;
+            this.completion = next.completion;
+        }
+
+        /**
+         * Conflate with a following frame, keeping all changes and an important event.
+         */
+        Frame conflate(Frame next) {
+            return new Frame(this, next);
         }
     }
 
+    /**
+     * Run on the main thread, immediately if already on it.
+     */
+    private void onMain(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            handler.post(runnable);
+        }
+    }
+
+    private void fireMeasured(Frame frame) {
+        for (MeasurementListener listener : measurements) {
+            listener.measured(frame);
+        }
+    }
+
+    private void fireSelected() {
+        final Program program = this.program;
+
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                for (SelectionListener listener : selections) {
+                    listener.programSelected(program);
+                }
+            }
+        });
+    }
+
+    private void fireWorkoutPersisted(Workout workout) {
+        final long id = Row.getID(workout);
+        final long start = workout.start.get();
+
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                for (WorkoutListener listener : workouts) {
+                    listener.workoutPersisted(id, start);
+                }
+            }
+        });
+    }
+
+    private void fireWorkoutDeleted(final long id, final long start) {
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                for (WorkoutListener listener : workouts) {
+                    listener.workoutDeleted(id, start);
+                }
+            }
+        });
+    }
+
+    private void fireProgramEdited(Program program) {
+        fireProgramEdited(Row.getID(program));
+    }
+
+    private void fireProgramEdited(final long id) {
+        onMain(new Runnable() {
+            @Override
+            public void run() {
+                for (ProgramListener listener : programs) {
+                    listener.programEdited(id);
+                }
+            }
+        });
+    }
+
     /**
      * Get the singelton Gym - has to be called on the main thread.
      */
@@ -583,18 +1267,67 @@ public class Gym {
         if (instance == null) {
             instance = new Gym(context.getApplicationContext());
 
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    instance.initialize();
-                }
-            }).start();
+            instance.initializer.start();
         }
 
         return instance;
     }
 
-    public interface Listener {
-        void changed(Object scope);
+    /**
+     * A listener interested in live measurements.
+     */
+    public interface MeasurementListener {
+        /**
+         * A measurement, on the main thread.
+         *
+         * @param frame immutable frame, possibly conflating several measurements
+         * @see Frame#changed
+         */
+        void measured(Frame frame);
+    }
+
+    /**
+     * A listener interested in the selection of programs.
+     */
+    public interface SelectionListener {
+        /**
+         * A program was selected, repeated, challenged or deselected.
+         *
+         * @param program the selected program, or {@code null}
+         */
+        void programSelected(Program program);
+    }
+
+    /**
+     * A listener interested in workouts.
+     */
+    public interface WorkoutListener {
+        /**
+         * A workout was inserted or updated.
+         *
+         * @param id id of the workout
+         * @param start start of the workout
+         */
+        void workoutPersisted(long id, long start);
+
+        /**
+         * A workout was deleted.
+         *
+         * @param id id of the deleted workout
+         * @param start start of the deleted workout
+         */
+        void workoutDeleted(long id, long start);
+    }
+
+    /**
+     * A listener interested in programs.
+     */
+    public interface ProgramListener {
+        /**
+         * A program was inserted, updated or deleted.
+         *
+         * @param id id of the program
+         */
+        void programEdited(long id);
     }
 }
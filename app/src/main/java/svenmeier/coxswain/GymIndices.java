@@ -0,0 +1,155 @@
+package svenmeier.coxswain;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import propoid.db.SQL;
+
+/**
+ * Indices of the gym, for all access paths of {@link Gym} and the workouts list.
+ * <p>
+ * Tables and columns are named after the propoids and their properties.
+ */
+class GymIndices {
+
+	static final List<Index> INDICES = new ArrayList<>();
+
+	static {
+		// workouts by start
+		add("workout_start", "Workout", "start");
+
+		// evaluated workouts in a time range, see Gym#getWorkouts(long, long)
+		add("workout_evaluate_start", "Workout", "evaluate", "start");
+		add("workout_program_evaluate_start", "Workout", "program", "evaluate", "start");
+
+		// workouts of a program sorted, see WorkoutsFragment
+		add("workout_program_start", "Workout", "program", "start");
+		add("workout_program_duration", "Workout", "program", "duration");
+		add("workout_program_distance", "Workout", "program", "distance");
+		add("workout_program_energy", "Workout", "program", "energy");
+
+		// all workouts sorted, see WorkoutsFragment
+		add("workout_duration", "Workout", "duration");
+		add("workout_distance", "Workout", "distance");
+		add("workout_energy", "Workout", "energy");
+
+		// daily rollups in a time range, see Gym#getRollups(long, long)
+		add("rollup_overall_day", "Rollup", "overall", "day");
+		add("rollup_program_day", "Rollup", "program", "day");
+
+		// details of a workout
+		add("snapshot_workout", "Snapshot", "workout");
+		add("track_workout", "Track", "workout");
+		add("strokerecords_workout_first", "StrokeRecords", "workout", "first");
+	}
+
+	private static void add(String name, String table, String... columns) {
+		INDICES.add(new Index(name, table, columns));
+	}
+
+	/**
+	 * Create all missing indices - an index is skipped if its table or columns do not exist yet.
+	 *
+	 * @return count of skipped indices
+	 */
+	static int create(SQLiteDatabase database) {
+		int skipped = 0;
+
+		for (Index index : INDICES) {
+			Set<String> columns = columns(database, index.table);
+			if (columns.containsAll(index.columns) == false) {
+				skipped++;
+				continue;
+			}
+
+			database.execSQL(index.create());
+		}
+
+		return skipped;
+	}
+
+	/**
+	 * Are all indices present.
+	 */
+	static boolean complete(SQLiteDatabase database) {
+		Set<String> names = new HashSet<>();
+
+		Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index'", new String[0]);
+		try {
+			while (cursor.moveToNext()) {
+				names.add(cursor.getString(0));
+			}
+		} finally {
+			cursor.close();
+		}
+
+		for (Index index : INDICES) {
+			if (names.contains(index.name) == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Set<String> columns(SQLiteDatabase database, String table) {
+		Set<String> columns = new HashSet<>();
+
+		SQL info = new SQL();
+		info.raw("PRAGMA table_info(");
+		info.escaped(table);
+		info.raw(")");
+
+		Cursor cursor = database.rawQuery(info.toString(), new String[0]);
+		try {
+			int name = cursor.getColumnIndex("name");
+			while (cursor.moveToNext()) {
+				columns.add(cursor.getString(name));
+			}
+		} finally {
+			cursor.close();
+		}
+
+		return columns;
+	}
+
+	static class Index {
+
+		final String name;
+
+		final String table;
+
+		final List<String> columns = new ArrayList<>();
+
+		Index(String name, String table, String... columns) {
+			this.name = name;
+			this.table = table;
+
+			for (String column : columns) {
+				this.columns.add(column);
+			}
+		}
+
+		String create() {
+			SQL create = new SQL();
+			create.raw("CREATE INDEX IF NOT EXISTS ");
+			create.escaped(name);
+			create.raw(" ON ");
+			create.escaped(table);
+			create.raw(" (");
+			for (int c = 0; c < columns.size(); c++) {
+				if (c > 0) {
+					create.raw(", ");
+				}
+				create.escaped(columns.get(c));
+			}
+			create.raw(")");
+
+			return create.toString();
+		}
+	}
+}
@@ -3,8 +3,11 @@ package svenmeier.coxswain;
 import android.content.Context;
 import android.content.res.AssetManager;
 import android.content.res.Resources;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.Toast;
 
 import java.io.File;
@@ -20,6 +23,11 @@ class GymLocator implements Locator {
 
 	private static final String NAME = "gym";
 
+	/**
+	 * Value of {@code PRAGMA auto_vacuum} for incremental vacuum.
+	 */
+	private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
 	private final Context context;
 
 	private SQLiteDatabase database;
@@ -42,7 +50,13 @@ class GymLocator implements Locator {
 			try {
 				database = open(external());
 			} catch (Exception ex) {
-				Toast.makeText(context, R.string.gym_repository_extern_failed, Toast.LENGTH_LONG).show();
+				// opened off the main thread
+				new Handler(Looper.getMainLooper()).post(new Runnable() {
+					@Override
+					public void run() {
+						Toast.makeText(context, R.string.gym_repository_extern_failed, Toast.LENGTH_LONG).show();
+					}
+				});
 			}
 		}
 
@@ -69,6 +83,66 @@ class GymLocator implements Locator {
 		return SQLiteDatabase.openOrCreateDatabase(file, null);
 	}
 
+	/**
+	 * Switch to incremental vacuum - an existing database has to be vacuumed fully once, thus
+	 * this is not done on opening.
+	 */
+	public void incremental() {
+		SQLiteDatabase database = this.database;
+		if (database == null || pragma(database, "PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+			return;
+		}
+
+		database.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+		database.execSQL("VACUUM");
+	}
+
+	/**
+	 * Create indices missing from the database, e.g. for tables created after versioning.
+	 *
+	 * @see GymIndices
+	 */
+	public void index() {
+		SQLiteDatabase database = this.database;
+		if (database == null || GymIndices.complete(database)) {
+			return;
+		}
+
+		GymIndices.create(database);
+	}
+
+	/**
+	 * Reclaim all free pages, without rewriting the whole database.
+	 *
+	 * @return count of pages left free
+	 */
+	public int vacuum() {
+		SQLiteDatabase database = this.database;
+		if (database == null) {
+			return 0;
+		}
+
+		// vacuum runs while the cursor is stepped
+		pragma(database, "PRAGMA incremental_vacuum");
+
+		return pragma(database, "PRAGMA freelist_count");
+	}
+
+	private int pragma(SQLiteDatabase database, String pragma) {
+		Cursor cursor = database.rawQuery(pragma, null);
+		try {
+			int value = 0;
+			while (cursor.moveToNext()) {
+				if (cursor.getColumnCount() > 0) {
+					value = cursor.getInt(0);
+				}
+			}
+			return value;
+		} finally {
+			cursor.close();
+		}
+	}
+
 	@Override
 	public void close() {
 		database.close();
@@ -32,14 +32,17 @@ import androidx.annotation.NonNull;
 import propoid.util.content.Preference;
 import svenmeier.coxswain.gym.Measurement;
 import svenmeier.coxswain.gym.Program;
+import svenmeier.coxswain.gym.Stroke;
+import svenmeier.coxswain.metrics.Metrics;
 import svenmeier.coxswain.motivator.DefaultMotivator;
 import svenmeier.coxswain.motivator.Motivator;
 import svenmeier.coxswain.rower.Rower;
 import svenmeier.coxswain.rower.mock.MockRower;
 import svenmeier.coxswain.rower.wireless.BluetoothRower;
+import svenmeier.coxswain.rower.wired.ReplayRower;
 import svenmeier.coxswain.rower.wired.UsbRower;
 
-public class GymService extends Service implements Gym.Listener, Rower.Callback, Heart.Callback {
+public class GymService extends Service implements Gym.SelectionListener, Rower.Callback {
 
     private static final String CONNECTOR_USB = "CONNECTOR_USB";
 
@@ -47,25 +50,34 @@ public class GymService extends Service implements Gym.Listener, Rower.Callback,
 
     public static final String CONNECTOR_MOCK = "CONNECTOR_MOCK";
 
+    public static final String CONNECTOR_REPLAY = "CONNECTOR_REPLAY";
+
+    public static final String CONNECTOR_REPLAY_FAST = "CONNECTOR_REPLAY_FAST";
+
     public static final String CONNECTOR_NONE = "CONNECTOR_NONE";
 
     private static final int NOTIFICATION_ID = 1;
 
+    /**
+     * Metrics of a rowing session, reset when it starts.
+     */
+    private static final String[] SESSION_METRICS = {"rower.", "protocol3.", "protocol4.", "usb.", "gym.process", "gym.delivery", "gym.conflated", "binding.update"};
+
     private Gym gym;
 
     private Handler handler = new Handler();
 
     private Preference<Boolean> openEnd;
 
-    private Foreground foreground;
+    private volatile Foreground foreground;
 
-    private Rower rower;
+    private volatile Rower rower;
 
     private Heart heart;
 
-    private Motivator motivator;
+    private volatile Motivator motivator;
 
-    private Program program;
+    private volatile Program program;
 
     @Override
     public void onCreate() {
@@ -97,10 +109,18 @@ public class GymService extends Service implements Gym.Listener, Rower.Callback,
 
         if (intent.getBooleanExtra(CONNECTOR_NONE, false)) {
             return false;
-        } else if (intent.getBooleanExtra(CONNECTOR_BLUETOOTH, false)) {
+        }
+
+        Metrics.reset(SESSION_METRICS);
+
+        if (intent.getBooleanExtra(CONNECTOR_BLUETOOTH, false)) {
             rower = new BluetoothRower(this, this);
         } else if (intent.getBooleanExtra(CONNECTOR_MOCK, false)) {
             rower = new MockRower(this, this);
+        } else if (intent.getBooleanExtra(CONNECTOR_REPLAY, false)) {
+            rower = new ReplayRower(this, true, this);
+        } else if (intent.getBooleanExtra(CONNECTOR_REPLAY_FAST, false)) {
+            rower = new ReplayRower(this, false, this);
         } else {
             rower = new UsbRower(this, (UsbDevice) intent.getParcelableExtra(CONNECTOR_USB), this);
         }
@@ -109,7 +129,7 @@ public class GymService extends Service implements Gym.Listener, Rower.Callback,
 
         this.motivator = new DefaultMotivator(getApplicationContext());
 
-        gym.addListener(this);
+        gym.selections.subscribe(this);
 
         rower.open();
 
@@ -120,7 +140,14 @@ public class GymService extends Service implements Gym.Listener, Rower.Callback,
         this.rower.close();
         this.rower = null;
 
-        this.motivator.destroy();
+        // destroy after measurements in flight
+        final Motivator motivator = this.motivator;
+        Engine.getHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                motivator.destroy();
+            }
+        });
         this.motivator = null;
 
         if (this.heart != null) {
@@ -133,20 +160,20 @@ public class GymService extends Service implements Gym.Listener, Rower.Callback,
 
         this.program = null;
 
-        gym.removeListener(this);
+        gym.selections.unsubscribe(this);
 
         // do not keep program
         gym.deselect();
     }
 
     @Override
-    public void changed(Object scope) {
+    public void programSelected(Program program) {
         if (rower == null) {
             return;
         }
 
-        if (gym.program != this.program) {
-            this.program = gym.program;
+        if (program != this.program) {
+            this.program = program;
 
             rower.reset();
 
@@ -160,7 +187,7 @@ public class GymService extends Service implements Gym.Listener, Rower.Callback,
             return;
         }
 
-        this.heart = Heart.create(GymService.this, rower, this);
+        this.heart = Heart.create(GymService.this, rower);
 
         foreground.connected();
 
@@ -172,26 +199,54 @@ public class GymService extends Service implements Gym.Listener, Rower.Callback,
         }
     }
 
+    /**
+     * Called on the {@link Engine} thread.
+     */
     @Override
-    public void onMeasurement(Measurement measurement) {
+    public void onStroke(Stroke stroke) {
         if (rower == null) {
             return;
         }
 
-        Event event = gym.onMeasured(measurement);
-        motivator.onEvent(event, rower, gym.progress);
+        gym.onStroke(stroke);
+    }
+
+    /**
+     * Called on the {@link Engine} thread.
+     */
+    @Override
+    public void onMeasurement(Measurement measurement, int changed) {
+        Motivator motivator = this.motivator;
+        Foreground foreground = this.foreground;
+        if (rower == null || motivator == null) {
+            return;
+        }
+
+        Gym.Frame frame = gym.onMeasured(measurement, changed);
+        Program selected = gym.program;
+        Event event = frame.event;
+        motivator.onEvent(event, measurement, frame.progress);
 
         if (event == Event.REJECTED) {
-            Toast.makeText(this, R.string.rowing_measurement_rejected, Toast.LENGTH_LONG).show();
-            gym.deselect();
+            toast(R.string.rowing_measurement_rejected);
+            gym.deselect(selected);
         } else if (event == Event.PROGRAM_FINISHED && openEnd.get() == false) {
-            Toast.makeText(this, R.string.rowing_program_finished, Toast.LENGTH_LONG).show();
-            gym.deselect();
-        } else if (program != null){
+            toast(R.string.rowing_program_finished);
+            gym.deselect(selected);
+        } else if (foreground != null) {
             foreground.progress();
         }
     }
 
+    private void toast(final int text) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                Toast.makeText(GymService.this, text, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
     @Override
     public void onDisconnected() {
         if (rower == null) {
@@ -203,12 +258,17 @@ public class GymService extends Service implements Gym.Listener, Rower.Callback,
         stopSelf();
     }
 
+    /**
+     * Progress is shown from the {@link Engine} thread, thus all access is synchronized.
+     */
     private class Foreground {
 
         private String text;
 
         private int progress = -1;
 
+        private boolean stopped;
+
         private NotificationManager notificationManager = (NotificationManager)getSystemService(NOTIFICATION_SERVICE);
 
         private Notification.Builder builder;
@@ -228,7 +288,7 @@ public class GymService extends Service implements Gym.Listener, Rower.Callback,
             startForeground(NOTIFICATION_ID, builder.build());
         }
 
-        public void connected() {
+        public synchronized void connected() {
             GymService service = GymService.this;
 
             String text = String.format(getString(R.string.gym_notification_connected), rower.getName());
@@ -248,12 +308,18 @@ public class GymService extends Service implements Gym.Listener, Rower.Callback,
             this.progress = -1;
         }
 
-        public void progress() {
+        public synchronized void progress() {
+            Program program = GymService.this.program;
+            if (stopped || program == null) {
+                return;
+            }
+
             String text = program.name.get();
             float completion = 0;
-            if (gym.progress != null) {
-                text += " - " +  gym.progress.describe();
-                completion = gym.progress.completion();
+            Gym.Progress current = gym.progress;
+            if (current != null) {
+                text += " - " +  current.describe();
+                completion = current.completion();
             }
 
             GymService service = GymService.this;
@@ -275,13 +341,15 @@ public class GymService extends Service implements Gym.Listener, Rower.Callback,
             this.progress = progress;
         }
 
-        public void changed() {
+        public synchronized void changed() {
             if (progress != -1 && program == null) {
                 connected();
             }
         }
 
-        public void stop() {
+        public synchronized void stop() {
+            stopped = true;
+
             text = null;
             progress = -1;
 
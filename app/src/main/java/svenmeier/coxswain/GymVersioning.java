@@ -16,6 +16,7 @@ class GymVersioning extends DefaultVersioning {
 
 	GymVersioning() {
 		add(new WrongIndices());
+		add(new CompositeIndices());
 	}
 
 	/**
@@ -40,4 +41,18 @@ class GymVersioning extends DefaultVersioning {
 			}
 		}
 	}
+
+	/**
+	 * Indices for all access paths, replacing the ones created on each start.
+	 *
+	 * @see GymIndices
+	 */
+	private class CompositeIndices implements Upgrade {
+		@Override
+		public void apply(SQLiteDatabase database) {
+			new WrongIndices().apply(database);
+
+			GymIndices.create(database);
+		}
+	}
 }
@@ -1,61 +1,46 @@
 package svenmeier.coxswain;
 
 import android.content.Context;
-import android.os.Handler;
 import android.util.Log;
 
 import java.lang.reflect.Constructor;
 
 import propoid.util.content.Preference;
-import svenmeier.coxswain.gym.Measurement;
 import svenmeier.coxswain.rower.Rower;
 
 /**
  */
 public class Heart {
 
-	private final Handler handler = new Handler();
-	
 	protected final Context context;
 
-	private final Measurement measurement;
+	private final Rower rower;
 
-	protected final Callback callback;
-
-	public Heart(Context context, Measurement measurement, Callback callback) {
+	public Heart(Context context, Rower rower) {
 		this.context = context;
-		this.measurement = measurement;
-		this.callback = callback;
+		this.rower = rower;
 	}
 
 	public void destroy() {
 	}
 
+	/**
+	 * A heart rate was measured - on any thread, the rower applies it on the engine.
+	 */
 	protected void onHeartRate(int heartRate) {
-		measurement.setPulse(heartRate);
-
-		handler.post(new Runnable() {
-			@Override
-			public void run() {
-				callback.onMeasurement(measurement);
-			}
-		});
+		rower.onHeartRate(heartRate);
 	}
 
-	public static Heart create(Context context, Measurement measurement, Callback callback) {
+	public static Heart create(Context context, Rower rower) {
 		Preference<String> sensors = Preference.getString(context, R.string.preference_hardware_heart_sensor);
 
 		String name = sensors.get();
 		try {
-			Constructor<?> constructor = Class.forName(name).getConstructor(Context.class, Measurement.class, Callback.class);
-			return (Heart) constructor.newInstance(context, measurement, callback);
+			Constructor<?> constructor = Class.forName(name).getConstructor(Context.class, Rower.class);
+			return (Heart) constructor.newInstance(context, rower);
 		} catch (Exception ex) {
 			Log.e(Coxswain.TAG, "cannot create sensor " + name);
-			return new Heart(context, measurement, callback);
+			return new Heart(context, rower);
 		}
 	}
-
-	public interface Callback {
-		void onMeasurement(Measurement measurement);
-	}
 }
@@ -24,6 +24,7 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -36,8 +37,11 @@ import androidx.viewpager.widget.ViewPager;
 import com.google.android.material.appbar.AppBarLayout;
 import com.google.android.material.tabs.TabLayout;
 
+import propoid.db.aspect.Row;
 import svenmeier.coxswain.gym.Program;
 import svenmeier.coxswain.io.ImportIntention;
+import svenmeier.coxswain.metrics.Histogram;
+import svenmeier.coxswain.metrics.Metrics;
 import svenmeier.coxswain.view.PerformanceFragment;
 import svenmeier.coxswain.view.ProgramsFragment;
 import svenmeier.coxswain.view.WorkoutsFragment;
@@ -49,6 +53,8 @@ public class MainActivity extends AbstractActivity {
 
     private static final int REQUEST_IMPORT = 42;
 
+    private static final Histogram FIRST_FRAME = Metrics.histogram("main.first-frame");
+
     private Gym gym;
 
     private ViewPager pager;
@@ -61,20 +67,42 @@ public class MainActivity extends AbstractActivity {
 
     private TextView programCurrentView;
 
-    private Gym.Listener listener;
+    private SelectedProgramListener listener;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        final long created = System.nanoTime();
+
         super.onCreate(savedInstanceState);
 
         gym = Gym.instance(this);
 
         setContentView(R.layout.layout_main);
 
+        final View content = findViewById(android.R.id.content);
+        content.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                content.getViewTreeObserver().removeOnPreDrawListener(this);
+
+                FIRST_FRAME.record(System.nanoTime() - created);
+                return true;
+            }
+        });
+
         onNewIntent(getIntent());
 
         pager = (ViewPager) findViewById(R.id.main_pager);
-        pager.setAdapter(new MainAdapter(getSupportFragmentManager()));
+        // fragments query the gym, so do not wait for it before the first frame
+        gym.whenInitialized(new Runnable() {
+            @Override
+            public void run() {
+                FragmentManager fragments = getSupportFragmentManager();
+                if (fragments.isDestroyed() == false) {
+                    pager.setAdapter(new MainAdapter(fragments));
+                }
+            }
+        });
 
         TabLayout tabLayout = (TabLayout)findViewById(R.id.tabs);
         tabLayout.setupWithViewPager(pager);
@@ -104,23 +132,38 @@ public class MainActivity extends AbstractActivity {
     protected void onResume() {
         super.onResume();
 
-        listener = new Gym.Listener() {
-            @Override
-            public void changed(Object scope) {
-                if (scope == null) {
-                    updateProgram();
-                }
-            }
-        };
-        listener.changed(null);
-        gym.addListener(listener);
+        listener = new SelectedProgramListener();
+        gym.selections.subscribe(listener);
+        gym.programs.subscribe(listener);
+
+        updateProgram();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
 
-        gym.removeListener(listener);
+        gym.selections.unsubscribe(listener);
+        gym.programs.unsubscribe(listener);
+    }
+
+    /**
+     * Shows the selected program.
+     */
+    private class SelectedProgramListener implements Gym.SelectionListener, Gym.ProgramListener {
+
+        @Override
+        public void programSelected(Program program) {
+            updateProgram();
+        }
+
+        @Override
+        public void programEdited(long id) {
+            Program program = gym.program;
+            if (program != null && Row.getID(program) == id) {
+                updateProgram();
+            }
+        }
     }
 
     private void updateProgram() {
@@ -137,11 +180,12 @@ public class MainActivity extends AbstractActivity {
                 appBar.addView(programView, 1); //
             }
 
-            programNameView.setText(gym.program.name.get());
+            programNameView.setText(program.name.get());
 
             String description = getString(R.string.gym_ready);
-            if (gym.progress != null) {
-                description = gym.progress.describe();
+            Gym.Progress progress = gym.progress;
+            if (progress != null) {
+                description = progress.describe();
             }
             programCurrentView.setText(description);
         }
@@ -213,6 +257,8 @@ public class MainActivity extends AbstractActivity {
 
         if (BuildConfig.DEBUG == false) {
             menu.findItem(R.id.action_mock).setVisible(false);
+            menu.findItem(R.id.action_replay).setVisible(false);
+            menu.findItem(R.id.action_replay_fast).setVisible(false);
         }
 
         return true;
@@ -225,6 +271,14 @@ public class MainActivity extends AbstractActivity {
         if (id == R.id.action_mock) {
             GymService.start(this, GymService.CONNECTOR_MOCK);
 
+            return true;
+        } else if (id == R.id.action_replay) {
+            GymService.start(this, GymService.CONNECTOR_REPLAY);
+
+            return true;
+        } else if (id == R.id.action_replay_fast) {
+            GymService.start(this, GymService.CONNECTOR_REPLAY_FAST);
+
             return true;
         } else if (id == R.id.action_help) {
             Intent browser = new Intent(Intent.ACTION_VIEW, Uri.parse(getString(R.string.help_url)));
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import propoid.db.LookupException;
+import propoid.db.Repository;
+import propoid.db.Transaction;
+import propoid.db.Where;
+import propoid.db.aspect.Row;
+import svenmeier.coxswain.gym.Program;
+import svenmeier.coxswain.gym.Rollup;
+import svenmeier.coxswain.gym.Workout;
+
+import static propoid.db.Where.all;
+import static propoid.db.Where.equal;
+import static propoid.db.Where.greaterEqual;
+import static propoid.db.Where.lessThan;
+
+/**
+ * Maintenance of daily {@link Rollup}s - each update recomputes the rollups of a single day
+ * from its workouts, so it has to be called in the transaction changing a workout.
+ */
+class Rollups {
+
+    private final Repository repository;
+
+    Rollups(Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Update the rollups of the day of the given workout, after it was merged or deleted.
+     */
+    public void update(Workout workout) {
+        long day = Rollup.day(workout.start.get());
+
+        recompute(day, null);
+
+        Program program = programOf(workout);
+        if (program != null) {
+            recompute(day, program);
+        }
+    }
+
+    /**
+     * Delete all rollups of a program.
+     */
+    public void delete(Program program) {
+        Rollup prototype = new Rollup();
+
+        repository.query(prototype, equal(prototype.program, program)).delete();
+    }
+
+    private void recompute(long day, Program program) {
+        Rollup example = new Rollup();
+        Where rollupWhere;
+        if (program == null) {
+            rollupWhere = all(equal(example.overall, true), equal(example.day, day));
+        } else {
+            rollupWhere = all(equal(example.program, program), equal(example.day, day));
+        }
+
+        Rollup rollup = repository.query(example, rollupWhere).first();
+        if (rollup == null) {
+            rollup = new Rollup(day, program);
+        } else {
+            rollup.clear();
+        }
+
+        Workout prototype = new Workout();
+        Where workoutWhere = all(
+                equal(prototype.evaluate, true),
+                greaterEqual(prototype.start, day),
+                lessThan(prototype.start, Rollup.nextDay(day)));
+        if (program != null) {
+            workoutWhere = all(equal(prototype.program, program), workoutWhere);
+        }
+
+        for (Workout workout : repository.query(prototype, workoutWhere).list()) {
+            rollup.add(workout);
+        }
+
+        if (rollup.count.get() > 0) {
+            repository.merge(rollup);
+        } else if (Row.getID(rollup) != Row.TRANSIENT) {
+            repository.delete(rollup);
+        }
+    }
+
+    /**
+     * Build all rollups from existing workouts, once only.
+     */
+    public void backfill() {
+        repository.transactional(new Transaction() {
+            @Override
+            public void doTransactional() {
+                // checked in the transaction, so no update can slip in between
+                if (repository.query(new Rollup()).count() > 0) {
+                    return;
+                }
+
+                Workout prototype = new Workout();
+                List<Workout> workouts = repository.query(prototype, equal(prototype.evaluate, true)).list();
+                if (workouts.isEmpty()) {
+                    return;
+                }
+
+                Map<Long, Rollup> overall = new HashMap<>();
+                Map<Long, Map<Long, Rollup>> programs = new HashMap<>();
+
+                for (Workout workout : workouts) {
+                    long day = Rollup.day(workout.start.get());
+
+                    rollup(overall, day, null).add(workout);
+
+                    Program program = programOf(workout);
+                    if (program != null) {
+                        Map<Long, Rollup> days = programs.get(Row.getID(program));
+                        if (days == null) {
+                            days = new HashMap<>();
+                            programs.put(Row.getID(program), days);
+                        }
+                        rollup(days, day, program).add(workout);
+                    }
+                }
+
+                for (Rollup rollup : overall.values()) {
+                    repository.insert(rollup);
+                }
+                for (Map<Long, Rollup> days : programs.values()) {
+                    for (Rollup rollup : days.values()) {
+                        repository.insert(rollup);
+                    }
+                }
+
+                Log.d(Coxswain.TAG, "backfilled rollups of " + workouts.size() + " workouts");
+            }
+        });
+    }
+
+    private Rollup rollup(Map<Long, Rollup> days, long day, Program program) {
+        Rollup rollup = days.get(day);
+        if (rollup == null) {
+            rollup = new Rollup(day, program);
+            days.put(day, rollup);
+        }
+        return rollup;
+    }
+
+    private Program programOf(Workout workout) {
+        try {
+            return workout.program.get();
+        } catch (LookupException programAlreadyDeleted) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import svenmeier.coxswain.gym.Measurement;
+
+/**
+ * Append-only journal of snapshots not yet committed to the repository, memory-mapped so
+ * appending costs no system call and survives the process being killed.
+ * <p>
+ * The file starts with a header of magic, generation and count of committed records, followed
+ * by fixed-size records. A record is valid only if it carries the marker of the current
+ * generation, which is written last. When all records are committed, the generation is
+ * incremented so the journal starts over.
+ */
+class SnapshotJournal implements Closeable {
+
+    static final int MAGIC = 0x434A524E; // CJRN
+
+    static final int HEADER = 16;
+
+    static final int RECORD = 48;
+
+    private static final int INITIAL_RECORDS = 1024;
+
+    private static final int GENERATION_OFFSET = 4;
+
+    private static final int COMMITTED_OFFSET = 8;
+
+    private static final int MARKER_OFFSET = 44;
+
+    private final RandomAccessFile file;
+
+    private MappedByteBuffer buffer;
+
+    private int generation;
+
+    /**
+     * Count of records committed.
+     */
+    private int committed;
+
+    /**
+     * Count of records appended.
+     */
+    private int appended;
+
+    SnapshotJournal(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+
+        if (this.file.length() < HEADER + RECORD) {
+            map(HEADER + INITIAL_RECORDS * RECORD);
+        } else {
+            map((int)this.file.length());
+        }
+
+        if (buffer.getInt(0) == MAGIC) {
+            generation = buffer.getInt(GENERATION_OFFSET);
+            committed = buffer.getInt(COMMITTED_OFFSET);
+
+            appended = committed;
+            while (isValid(appended)) {
+                appended++;
+            }
+        } else {
+            generation = 1;
+            committed = 0;
+            appended = 0;
+
+            buffer.putInt(0, MAGIC);
+            writeHeader();
+        }
+    }
+
+    private void map(int size) throws IOException {
+        file.setLength(size);
+
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private int capacity() {
+        return (buffer.capacity() - HEADER) / RECORD;
+    }
+
+    private int offset(int record) {
+        return HEADER + record * RECORD;
+    }
+
+    private int marker() {
+        return MAGIC ^ generation;
+    }
+
+    private boolean isValid(int record) {
+        return record < capacity() && buffer.getInt(offset(record) + MARKER_OFFSET) == marker();
+    }
+
+    private void writeHeader() {
+        buffer.putInt(GENERATION_OFFSET, generation);
+        buffer.putInt(COMMITTED_OFFSET, committed);
+    }
+
+    /**
+     * Append a snapshot.
+     *
+     * @param workout start of the workout, identifying it
+     * @param measurement measurement of the snapshot
+     * @return sequence of the appended record
+     */
+    public synchronized int append(long workout, Measurement measurement) throws IOException {
+        if (appended == capacity()) {
+            map(buffer.capacity() + capacity() * RECORD);
+        }
+
+        int offset = offset(appended);
+        buffer.putLong(offset, workout);
+        buffer.putInt(offset + 8, measurement.getDuration());
+        buffer.putInt(offset + 12, measurement.getDistance());
+        buffer.putInt(offset + 16, measurement.getStrokes());
+        buffer.putInt(offset + 20, measurement.getEnergy());
+        buffer.putInt(offset + 24, measurement.getSpeed());
+        buffer.putInt(offset + 28, measurement.getPulse());
+        buffer.putInt(offset + 32, measurement.getStrokeRate());
+        buffer.putInt(offset + 36, measurement.getStrokeRatio());
+        buffer.putInt(offset + 40, measurement.getPower());
+
+        // marker last, so a partial record is not valid
+        buffer.putInt(offset + MARKER_OFFSET, marker());
+
+        return appended++;
+    }
+
+    /**
+     * Count of records not yet committed.
+     */
+    public synchronized int pending() {
+        return appended - committed;
+    }
+
+    /**
+     * Get all records not yet committed, oldest first.
+     */
+    public synchronized List<Record> pendingRecords() {
+        List<Record> records = new ArrayList<>(appended - committed);
+
+        for (int r = committed; r < appended; r++) {
+            int offset = offset(r);
+
+            Measurement measurement = new Measurement();
+            measurement.setDuration(buffer.getInt(offset + 8));
+            measurement.setDistance(buffer.getInt(offset + 12));
+            measurement.setStrokes(buffer.getInt(offset + 16));
+            measurement.setEnergy(buffer.getInt(offset + 20));
+            measurement.setSpeed(buffer.getInt(offset + 24));
+            measurement.setPulse(buffer.getInt(offset + 28));
+            measurement.setStrokeRate(buffer.getInt(offset + 32));
+            measurement.setStrokeRatio(buffer.getInt(offset + 36));
+            measurement.setPower(buffer.getInt(offset + 40));
+            measurement.clearChanged();
+
+            records.add(new Record(r, buffer.getLong(offset), measurement));
+        }
+
+        return records;
+    }
+
+    /**
+     * All records before the given sequence were committed to the repository - truncates the
+     * journal once all records are committed.
+     *
+     * @param end sequence following the last committed record
+     */
+    public synchronized void committed(int end) {
+        committed = Math.max(committed, Math.min(end, appended));
+
+        if (committed == appended) {
+            // start over
+            generation++;
+            committed = 0;
+            appended = 0;
+        }
+
+        writeHeader();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+
+        file.close();
+    }
+
+    /**
+     * A journaled snapshot.
+     */
+    static class Record {
+
+        /**
+         * Sequence in the journal.
+         */
+        public final int sequence;
+
+        /**
+         * Start of the workout.
+         */
+        public final long workout;
+
+        public final Measurement measurement;
+
+        Record(int sequence, long workout, Measurement measurement) {
+            this.sequence = sequence;
+            this.workout = workout;
+            this.measurement = measurement;
+        }
+
+        /**
+         * Was this record committed already, although the journal was not told so, e.g. because
+         * the process was killed right after the commit.
+         *
+         * @param duration persisted duration of the workout
+         */
+        public boolean isCommitted(int duration) {
+            return measurement.getDuration() <= duration;
+        }
+    }
+}
@@ -0,0 +1,638 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import propoid.db.LookupException;
+import propoid.db.Match;
+import propoid.db.Order;
+import propoid.db.Range;
+import propoid.db.Reference;
+import propoid.db.Repository;
+import propoid.db.Transaction;
+import propoid.db.Where;
+import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.gym.Snapshot;
+import svenmeier.coxswain.gym.Stroke;
+import svenmeier.coxswain.gym.StrokeRecords;
+import svenmeier.coxswain.gym.Track;
+import svenmeier.coxswain.gym.Workout;
+import svenmeier.coxswain.metrics.Counter;
+import svenmeier.coxswain.metrics.Histogram;
+import svenmeier.coxswain.metrics.Metrics;
+
+/**
+ * Single writer of workouts and their snapshots.
+ * <p>
+ * Rows are committed on a background thread in batched transactions, every {@link #INTERVAL}
+ * or as soon as {@link #BATCH} rows are pending, whatever comes first. Until then snapshots are
+ * kept in a {@link SnapshotJournal}, so they are not lost if the process is killed.
+ * <p>
+ * Snapshots are written as rows while a workout is in progress. Once the workout is finished,
+ * they are archived into a single {@link Track}.
+ * <p>
+ * Strokes are packed into {@link StrokeRecords}, one row for each workout and batch, and
+ * consolidated into a single row once the workout is finished.
+ * <p>
+ * {@link Rollups} of merged workouts are updated in the same transaction. A batch that fails to
+ * commit is retried after {@link #INTERVAL}, its journaled snapshots are kept until it succeeds.
+ * <p>
+ * Callers not allowed to wait for a commit, e.g. on the main thread, pass a callback to
+ * {@link #flush(Runnable)} or {@link #archive(Workout, Runnable)} instead, which is run on the
+ * writer thread.
+ */
+class SnapshotWriter implements Runnable {
+
+    static final long INTERVAL = 5000;
+
+    static final int BATCH = 50;
+
+    private static final Histogram WRITE = Metrics.histogram("gym.write");
+
+    private static final Counter ROWS = Metrics.counter("gym.rows");
+
+    private final Repository repository;
+
+    private final SnapshotJournal journal;
+
+    private final Rollups rollups;
+
+    /**
+     * Totals of workouts to merge.
+     */
+    private List<Totals> workouts = new ArrayList<>();
+
+    private List<Snapshot> snapshots = new ArrayList<>();
+
+    private List<StrokeRecords> records = new ArrayList<>();
+
+    /**
+     * Workout of pending strokes.
+     */
+    private Workout strokesOf;
+
+    /**
+     * Index of the first pending stroke in its workout.
+     */
+    private int strokesFirst;
+
+    private List<Stroke> strokes = new ArrayList<>();
+
+    /**
+     * Finished workouts to archive.
+     */
+    private List<Archive> archives = new ArrayList<>();
+
+    /**
+     * Callbacks waiting for all rows to be committed.
+     */
+    private List<Runnable> flushes = new ArrayList<>();
+
+    /**
+     * Journal sequence following the last journaled pending snapshot.
+     */
+    private int journaled;
+
+    /**
+     * When the oldest pending row was added.
+     */
+    private long pendingSince;
+
+    /**
+     * Count of rows added so far.
+     */
+    private long added;
+
+    /**
+     * Count of rows committed so far.
+     */
+    private long committed;
+
+    /**
+     * Count of failed commits so far.
+     */
+    private long failures;
+
+    private boolean flushing;
+
+    /**
+     * @param repository repository to write to
+     * @param journal optional journal
+     */
+    SnapshotWriter(Repository repository, SnapshotJournal journal) {
+        this.repository = repository;
+        this.journal = journal;
+        this.rollups = new Rollups(repository);
+
+        Thread thread = new Thread(this, "snapshots");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Merge the totals of a workout with the next batch - the workout has to be persisted already.
+     * <p>
+     * The totals are copied, so this has to be called on the thread measuring the workout.
+     */
+    public synchronized void merge(Workout workout) {
+        Totals totals = find(workouts, workout);
+        if (totals != null) {
+            totals.copy(workout);
+            return;
+        }
+
+        workouts.add(new Totals(workout));
+        added();
+    }
+
+    private static Totals find(List<Totals> workouts, Workout workout) {
+        for (int w = 0; w < workouts.size(); w++) {
+            Totals totals = workouts.get(w);
+            if (totals.workout == workout) {
+                return totals;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Insert a snapshot with the next batch, merging the totals of its workout too - the workout
+     * has to be persisted already.
+     * <p>
+     * Thus a committed snapshot is never later than the persisted duration of its workout, see
+     * {@link SnapshotJournal.Record#isCommitted(int)}.
+     */
+    public synchronized void insert(Workout workout, Measurement measurement) {
+        if (journal != null) {
+            try {
+                journaled = journal.append(workout.start.get(), measurement) + 1;
+            } catch (IOException ex) {
+                // still written with the batch, but not replayed if killed meanwhile
+                Log.e(Coxswain.TAG, "cannot journal snapshot", ex);
+            }
+        }
+
+        Snapshot snapshot = new Snapshot(measurement);
+        snapshot.workout.set(workout);
+
+        snapshots.add(snapshot);
+        added();
+
+        merge(workout);
+    }
+
+    /**
+     * Insert a stroke with the next batch - the workout has to be persisted already.
+     */
+    public synchronized void insert(Workout workout, Stroke stroke) {
+        if (strokesOf != workout) {
+            packStrokes();
+
+            strokesOf = workout;
+            strokesFirst = 0;
+        }
+
+        strokes.add(stroke);
+        added();
+    }
+
+    /**
+     * Pack pending strokes into records.
+     */
+    private void packStrokes() {
+        if (strokes.isEmpty()) {
+            return;
+        }
+
+        records.add(new StrokeRecords(strokesOf, strokesFirst, strokes));
+
+        strokesFirst += strokes.size();
+        strokes = new ArrayList<>();
+    }
+
+    private void added() {
+        if (added == committed) {
+            pendingSince = System.currentTimeMillis();
+        }
+        added++;
+
+        if (snapshots.size() >= BATCH) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Archive the snapshots of a finished workout into a track, after all pending rows are
+     * committed.
+     *
+     * @param workout finished workout
+     * @param archived optional callback, run on the writer thread once archived
+     */
+    public synchronized void archive(Workout workout, Runnable archived) {
+        archives.add(new Archive(workout, archived));
+
+        notifyAll();
+    }
+
+    /**
+     * Archive the snapshots of all workouts still stored in rows, that are no longer in progress.
+     *
+     * @param before workouts started before are no longer in progress
+     */
+    public void migrate(long before) {
+        Snapshot prototype = new Snapshot();
+        Workout example = new Workout();
+
+        // workouts with snapshot rows, in order of their start, so a failing one is skipped
+        long after = Long.MIN_VALUE;
+        while (true) {
+            List<Workout> workouts = repository.query(example, Where.all(
+                    Where.greaterEqual(example.start, after),
+                    Where.lessThan(example.start, before),
+                    // any snapshot
+                    Where.is(prototype.workout, Where.greaterEqual(prototype.distance, 0))
+            )).list(Range.limit(1), Order.ascending(example.start));
+            if (workouts.isEmpty()) {
+                break;
+            }
+
+            Workout workout = workouts.get(0);
+            archiveNow(workout);
+
+            after = workout.start.get() + 1;
+        }
+
+        // rows of deleted workouts
+        while (true) {
+            Snapshot first = repository.query(prototype).first();
+            if (first == null) {
+                break;
+            }
+
+            try {
+                first.workout.get();
+
+                // a workout failed to archive, left for the next start
+                break;
+            } catch (LookupException workoutAlreadyDeleted) {
+                repository.delete(first);
+            }
+        }
+    }
+
+    /**
+     * Commit all pending rows without waiting.
+     *
+     * @param flushed callback, run on the writer thread once all rows are written
+     */
+    public synchronized void flush(Runnable flushed) {
+        flushes.add(flushed);
+
+        flushing = true;
+        notifyAll();
+    }
+
+    /**
+     * Commit all pending rows, waiting until they are written or the commit failed - not to be
+     * called on the main thread.
+     *
+     * @return whether all rows were written
+     * @see #flush(Runnable)
+     */
+    public synchronized boolean flush() {
+        long target = added;
+        if (committed >= target) {
+            return true;
+        }
+
+        flushing = true;
+        notifyAll();
+
+        long failuresBefore = failures;
+        boolean interrupted = false;
+        while (committed < target && failures == failuresBefore) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        return committed >= target;
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        while (true) {
+            final List<Totals> workouts;
+            final List<Snapshot> snapshots;
+            final List<StrokeRecords> records;
+            final List<Archive> archives;
+            final List<Runnable> flushes;
+            int journalEnd;
+            long target;
+
+            synchronized (this) {
+                try {
+                    awaitBatch();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+
+                packStrokes();
+
+                workouts = this.workouts;
+                snapshots = this.snapshots;
+                records = this.records;
+                archives = this.archives;
+                flushes = this.flushes;
+                journalEnd = journaled;
+                target = added;
+
+                this.workouts = new ArrayList<>();
+                this.snapshots = new ArrayList<>();
+                this.records = new ArrayList<>();
+                this.archives = new ArrayList<>();
+                this.flushes = new ArrayList<>();
+                journaled = 0;
+                flushing = false;
+            }
+
+            if (workouts.isEmpty() == false || snapshots.isEmpty() == false || records.isEmpty() == false) {
+                if (commit(workouts, snapshots, records) == false) {
+                    synchronized (this) {
+                        retry(workouts, snapshots, records, archives, flushes, journalEnd);
+
+                        failures++;
+                        notifyAll();
+
+                        try {
+                            awaitRetry();
+                        } catch (InterruptedException ex) {
+                            return;
+                        }
+                    }
+                    continue;
+                }
+            }
+
+            if (journal != null) {
+                journal.committed(journalEnd);
+            }
+
+            synchronized (this) {
+                committed = target;
+                notifyAll();
+            }
+
+            for (Archive archive : archives) {
+                archiveNow(archive.workout);
+
+                callback(archive.archived);
+            }
+
+            for (Runnable flushed : flushes) {
+                callback(flushed);
+            }
+        }
+    }
+
+    private void callback(Runnable callback) {
+        if (callback == null) {
+            return;
+        }
+
+        try {
+            callback.run();
+        } catch (RuntimeException ex) {
+            Log.e(Coxswain.TAG, "callback failed", ex);
+        }
+    }
+
+    private void awaitBatch() throws InterruptedException {
+        while (true) {
+            if (added == committed && archives.isEmpty() && flushes.isEmpty()) {
+                wait();
+                continue;
+            }
+
+            if (flushing || snapshots.size() >= BATCH || archives.isEmpty() == false) {
+                return;
+            }
+
+            long remaining = pendingSince + INTERVAL - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return;
+            }
+            wait(remaining);
+        }
+    }
+
+    /**
+     * Put a failed batch in front of the rows added meanwhile.
+     */
+    private void retry(List<Totals> workouts, List<Snapshot> snapshots, List<StrokeRecords> records, List<Archive> archives, List<Runnable> flushes, int journalEnd) {
+        for (Totals totals : this.workouts) {
+            Totals failed = find(workouts, totals.workout);
+            if (failed == null) {
+                workouts.add(totals);
+            } else {
+                // newer totals win
+                failed.copy(totals);
+            }
+        }
+        this.workouts = workouts;
+
+        snapshots.addAll(this.snapshots);
+        this.snapshots = snapshots;
+
+        records.addAll(this.records);
+        this.records = records;
+
+        archives.addAll(this.archives);
+        this.archives = archives;
+
+        flushes.addAll(this.flushes);
+        this.flushes = flushes;
+
+        journaled = Math.max(journaled, journalEnd);
+    }
+
+    private void awaitRetry() throws InterruptedException {
+        long retry = System.currentTimeMillis() + INTERVAL;
+
+        long remaining;
+        while ((remaining = retry - System.currentTimeMillis()) > 0) {
+            wait(remaining);
+        }
+    }
+
+    /**
+     * Commit a batch.
+     *
+     * @return whether the batch was committed
+     */
+    private boolean commit(final List<Totals> workouts, final List<Snapshot> snapshots, final List<StrokeRecords> records) {
+        long start = System.nanoTime();
+
+        try {
+            repository.transactional(new Transaction() {
+                @Override
+                public void doTransactional() {
+                    for (Totals totals : workouts) {
+                        Workout workout;
+                        try {
+                            // not the live workout, which is changed meanwhile
+                            workout = repository.lookup(new Reference<>(totals.workout));
+                        } catch (LookupException workoutAlreadyDeleted) {
+                            continue;
+                        }
+
+                        totals.applyTo(workout);
+                        repository.merge(workout);
+                        rollups.update(workout);
+                    }
+
+                    for (Snapshot snapshot : snapshots) {
+                        repository.insert(snapshot);
+                    }
+
+                    for (StrokeRecords record : records) {
+                        repository.insert(record);
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            // journaled snapshots are kept until the retry succeeds
+            Log.e(Coxswain.TAG, "cannot write snapshots", ex);
+            return false;
+        }
+
+        WRITE.record(System.nanoTime() - start);
+        ROWS.add(workouts.size() + snapshots.size() + records.size());
+
+        return true;
+    }
+
+    /**
+     * Replace the snapshot rows of a workout with a track and consolidate its strokes.
+     */
+    private void archiveNow(final Workout workout) {
+        try {
+            repository.transactional(new Transaction() {
+                @Override
+                public void doTransactional() {
+                    Snapshot prototype = new Snapshot();
+                    Match<Snapshot> rows = repository.query(prototype, Where.equal(prototype.workout, workout));
+
+                    List<Snapshot> snapshots = rows.list(Range.limit(Integer.MAX_VALUE), Order.ascendingByInsert());
+                    if (snapshots.isEmpty() == false) {
+                        repository.insert(new Track(workout, snapshots));
+
+                        rows.delete();
+                    }
+
+                    StrokeRecords example = new StrokeRecords();
+                    Match<StrokeRecords> records = repository.query(example, Where.equal(example.workout, workout));
+
+                    List<StrokeRecords> batches = records.list(Range.limit(Integer.MAX_VALUE), Order.ascending(example.first));
+                    if (batches.size() > 1) {
+                        List<Stroke> strokes = new ArrayList<>();
+                        for (StrokeRecords batch : batches) {
+                            strokes.addAll(batch.getStrokes());
+                        }
+
+                        records.delete();
+
+                        repository.insert(new StrokeRecords(workout, 0, strokes));
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            Log.e(Coxswain.TAG, "cannot archive snapshots", ex);
+        }
+    }
+
+    /**
+     * A finished workout to archive.
+     */
+    private static class Archive {
+
+        final Workout workout;
+
+        final Runnable archived;
+
+        Archive(Workout workout, Runnable archived) {
+            this.workout = workout;
+            this.archived = archived;
+        }
+    }
+
+    /**
+     * Totals of a workout, copied from the live workout.
+     */
+    private static class Totals {
+
+        final Workout workout;
+
+        private int duration;
+
+        private int distance;
+
+        private int strokes;
+
+        private int energy;
+
+        Totals(Workout workout) {
+            this.workout = workout;
+
+            copy(workout);
+        }
+
+        void copy(Workout workout) {
+            duration = workout.duration.get();
+            distance = workout.distance.get();
+            strokes = workout.strokes.get();
+            energy = workout.energy.get();
+        }
+
+        void copy(Totals totals) {
+            duration = totals.duration;
+            distance = totals.distance;
+            strokes = totals.strokes;
+            energy = totals.energy;
+        }
+
+        void applyTo(Workout workout) {
+            workout.duration.set(duration);
+            workout.distance.set(distance);
+            workout.strokes.set(strokes);
+            workout.energy.set(energy);
+        }
+    }
+}
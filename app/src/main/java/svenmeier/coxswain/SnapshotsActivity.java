@@ -18,6 +18,7 @@ package svenmeier.coxswain;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Process;
 import android.text.format.DateUtils;
 import android.view.MenuItem;
 
@@ -35,9 +36,7 @@ import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
 import java.util.ArrayList;
 import java.util.List;
 
-import propoid.db.Order;
 import propoid.db.Reference;
-import propoid.ui.list.MatchLookup;
 import svenmeier.coxswain.gym.Snapshot;
 import svenmeier.coxswain.gym.Workout;
 import svenmeier.coxswain.util.ChartUtils;
@@ -90,7 +89,7 @@ public class SnapshotsActivity extends AbstractActivity {
 
         ChartUtils.setTextColor(this, chartView);
 
-        new SnapshotLookup().restartLoader(0, this);
+        new Thread(new SnapshotLookup()).start();
     }
 
     @Override
@@ -104,16 +103,29 @@ public class SnapshotsActivity extends AbstractActivity {
         }
     }
 
-    private class SnapshotLookup extends MatchLookup<Snapshot> {
+    /**
+     * Decodes the snapshots in the background.
+     */
+    private class SnapshotLookup implements Runnable {
 
-        SnapshotLookup() {
-            super(gym.getSnapshots(workout));
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            final List<Snapshot> lookup = gym.getSnapshots(workout);
 
-            setOrder(Order.ascendingByInsert());
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    onLookup(lookup);
+                }
+            });
         }
 
-        @Override
-        protected void onLookup(List<Snapshot> lookup) {
+        private void onLookup(List<Snapshot> lookup) {
+            if (isFinishing()) {
+                return;
+            }
 
             List<ILineDataSet> dataSets = new ArrayList<>();
 
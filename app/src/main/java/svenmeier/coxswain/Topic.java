@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain;
+
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A topic of changes in the {@link Gym}, with its subscribed listeners.
+ * <p>
+ * Listeners are notified on the main thread. They may unsubscribe while being notified.
+ *
+ * @param <L> type of listeners
+ */
+public class Topic<L> implements Iterable<L> {
+
+    private final CopyOnWriteArrayList<L> listeners = new CopyOnWriteArrayList<>();
+
+    public void subscribe(L listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void unsubscribe(L listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public Iterator<L> iterator() {
+        return listeners.iterator();
+    }
+}
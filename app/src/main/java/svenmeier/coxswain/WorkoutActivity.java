@@ -21,6 +21,7 @@ import android.content.res.Configuration;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Process;
 import android.util.DisplayMetrics;
 import android.view.View;
 import android.view.WindowManager;
@@ -32,11 +33,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import propoid.ui.list.MatchLookup;
 import propoid.util.content.Preference;
 import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.gym.Program;
 import svenmeier.coxswain.gym.Segment;
 import svenmeier.coxswain.gym.Snapshot;
+import svenmeier.coxswain.gym.Workout;
+import svenmeier.coxswain.metrics.Histogram;
+import svenmeier.coxswain.metrics.Metrics;
 import svenmeier.coxswain.view.BindingDialogFragment;
 import svenmeier.coxswain.view.BindingView;
 import svenmeier.coxswain.view.LevelView;
@@ -47,7 +51,9 @@ import svenmeier.coxswain.view.ValueBinding;
 
 /**
  */
-public class WorkoutActivity extends AbstractActivity implements View.OnSystemUiVisibilityChangeListener, Gym.Listener, BindingDialogFragment.Callback {
+public class WorkoutActivity extends AbstractActivity implements View.OnSystemUiVisibilityChangeListener, Gym.MeasurementListener, Gym.SelectionListener, BindingDialogFragment.Callback {
+
+	private static final Histogram BINDING_UPDATE = Metrics.histogram("binding.update");
 
 	private static final List<ValueBinding> DEFAULT_BINDING = Arrays.asList(
 			ValueBinding.DURATION,
@@ -227,13 +233,15 @@ public class WorkoutActivity extends AbstractActivity implements View.OnSystemUi
 	protected void onStart() {
 		super.onStart();
 
-		gym.addListener(this);
-		changed(null);
+		gym.measurements.subscribe(this);
+		gym.selections.subscribe(this);
+		programSelected(gym.program);
 	}
 
 	@Override
 	protected void onStop() {
-		gym.removeListener(this);
+		gym.measurements.unsubscribe(this);
+		gym.selections.unsubscribe(this);
 
 		super.onStop();
 	}
@@ -248,15 +256,22 @@ public class WorkoutActivity extends AbstractActivity implements View.OnSystemUi
 	}
 
 	@Override
-	public void changed(Object scope) {
+	public void programSelected(Program program) {
+		if (program == null) {
+			finish();
+		}
+	}
+
+	@Override
+	public void measured(Gym.Frame frame) {
 		if (gym.program == null) {
 			finish();
 			return;
 		}
 
-		if (Measurement.class.isInstance(scope)) {
-			updateBindings((Measurement)scope);
-			updateLevel();
+		updateBindings(frame, frame.changed);
+		if ((frame.changed & Measurement.TARGETS) != 0) {
+			updateLevel(frame);
 		}
 	}
 
@@ -265,22 +280,31 @@ public class WorkoutActivity extends AbstractActivity implements View.OnSystemUi
 		leanBack(true);
 	}
 
-	private void updateBindings(Measurement measurement) {
+	private void updateBindings(Gym.Frame frame, int changed) {
+		long start = System.nanoTime();
+
 		int count = gridView.getChildCount();
 		for (int v = 0; v < count; v++) {
-			((BindingView) gridView.getChildAt(v)).changed(gym, paceBoat, measurement);
+			((BindingView) gridView.getChildAt(v)).changed(frame, paceBoat, changed);
 		}
+
+		BINDING_UPDATE.record(System.nanoTime() - start);
 	}
 
-	private void updateLevel() {
+	private void updateLevel(Gym.Frame frame) {
+		Program program = gym.program;
+		if (program == null) {
+			return;
+		}
+
 		float value = 0f;
 		float total = 0f;
-		Gym.Progress progress = gym.progress;
-		for (Segment segment : gym.program.segments.get()) {
+		Gym.Progress progress = frame.progress;
+		for (Segment segment : program.segments.get()) {
 			float segmentValue = segment.asDuration();
 
 			if (progress != null && progress.segment == segment) {
-				value = total + progress.completion() * segmentValue;
+				value = total + frame.completion * segmentValue;
 			}
 
 			total += segmentValue;
@@ -294,7 +318,9 @@ public class WorkoutActivity extends AbstractActivity implements View.OnSystemUi
 	@Override
 	public void onBinding(int index, ValueBinding binding) {
 		if (binding != null) {
-			((BindingView) gridView.getChildAt(index)).setBinding(binding);
+			BindingView bindingView = (BindingView) gridView.getChildAt(index);
+			bindingView.setBinding(binding);
+			bindingView.changed(gym.getFrame(), paceBoat, Measurement.ALL);
 		}
 
 		leanBack(true);
@@ -358,16 +384,32 @@ public class WorkoutActivity extends AbstractActivity implements View.OnSystemUi
 	/**
 	 * Use a previous {@link svenmeier.coxswain.gym.Workout} as a pace boat.
 	 */
-	private class WorkoutPaceBoat extends MatchLookup<Snapshot> implements BindingView.PaceBoat {
+	private class WorkoutPaceBoat implements BindingView.PaceBoat, Runnable {
+
+		private final Workout pace;
 
 		private List<Snapshot> snapshots = new ArrayList<>();
 
 		private int duration;
 
 		protected WorkoutPaceBoat() {
-			super(gym.getSnapshots(gym.pace));
+			pace = gym.pace;
+
+			new Thread(this).start();
+		}
+
+		@Override
+		public void run() {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
 
-			restartLoader(0, WorkoutActivity.this);
+			final List<Snapshot> snapshots = gym.getSnapshots(pace);
+
+			runOnUiThread(new Runnable() {
+				@Override
+				public void run() {
+					WorkoutPaceBoat.this.snapshots = snapshots;
+				}
+			});
 		}
 
 		@Override
@@ -376,10 +418,12 @@ public class WorkoutActivity extends AbstractActivity implements View.OnSystemUi
 				return 0;
 			}
 
-			int from = distanceAt(measurement.getDuration());
-			int to = distanceAt(measurement.getDuration() + 1);
+			int elapsed = measurement.getElapsed(System.nanoTime());
+
+			int from = distanceAt(elapsed / 1000);
+			int to = distanceAt(elapsed / 1000 + 1);
 
-			int paceDistance = from + ((to - from) * (measurement.getDistance() % 1000) / 1000);
+			int paceDistance = from + ((to - from) * (elapsed % 1000) / 1000);
 
 			return measurement.getDistance() - paceDistance;
 		}
@@ -419,14 +463,6 @@ public class WorkoutActivity extends AbstractActivity implements View.OnSystemUi
 
 			return measurement.getDuration() - this.duration;
 		}
-
-		@Override
-		protected void onLookup(List<Snapshot> propoids) {
-			this.snapshots = propoids;
-
-			// no updates needed
-			destroy(0, WorkoutActivity.this);
-		}
 	}
 
 	/**
@@ -15,7 +15,7 @@ import java.util.EnumSet;
 
 import svenmeier.coxswain.Heart;
 import svenmeier.coxswain.R;
-import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.rower.Rower;
 
 /**
  * Created by sven on 13.12.16.
@@ -28,8 +28,8 @@ public class AntHeart extends Heart {
 
 	private Connection connection;
 
-	public AntHeart(Context context, Measurement measurement, Callback callback) {
-		super(context, measurement, callback);
+	public AntHeart(Context context, Rower rower) {
+		super(context, rower);
 
 		this.connection = new AntConnection();
 		this.connection.open();
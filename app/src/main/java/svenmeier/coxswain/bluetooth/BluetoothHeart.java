@@ -31,7 +31,7 @@ import propoid.util.content.Preference;
 import svenmeier.coxswain.Coxswain;
 import svenmeier.coxswain.Heart;
 import svenmeier.coxswain.R;
-import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.rower.Rower;
 import svenmeier.coxswain.util.PermissionBlock;
 
 /**
@@ -49,8 +49,8 @@ public class BluetoothHeart extends Heart {
 
 	private Preference<String> devicePreference;
 
-	public BluetoothHeart(Context context, Measurement measurement, Callback callback) {
-		super(context, measurement, callback);
+	public BluetoothHeart(Context context, Rower rower) {
+		super(context, rower);
 
 		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
 			toast(context.getString(R.string.bluetooth_heart_no_bluetooth));
@@ -22,8 +22,8 @@ import java.io.InputStreamReader;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
+import java.util.List;
 
-import propoid.db.Match;
 import propoid.util.content.Preference;
 import svenmeier.coxswain.Coxswain;
 import svenmeier.coxswain.Gym;
@@ -93,7 +93,7 @@ public class TcxExport extends Export<Workout> {
 			toast(context.getString(R.string.garmin_export_starting));
 			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
 
-			Match<Snapshot> snapshots = gym.getSnapshots(workout);
+			List<Snapshot> snapshots = gym.getSnapshots(workout);
 
 			final File file;
 			try {
@@ -126,7 +126,7 @@ public class TcxExport extends Export<Workout> {
 			return name.toString();
 		}
 
-		private File write(Match<Snapshot> snapshots) throws IOException {
+		private File write(List<Snapshot> snapshots) throws IOException {
 			File dir = Coxswain.getExternalFilesDir(context);
 			dir.mkdirs();
 			dir.setReadable(true, false);
@@ -137,7 +137,7 @@ public class TcxExport extends Export<Workout> {
 			try {
 				Workout2TCX workout2TCX = new Workout2TCX(writer, getCourse(workout));
 
-				workout2TCX.document(workout, snapshots.list());
+				workout2TCX.document(workout, snapshots);
 			} finally {
 				writer.close();
 			}
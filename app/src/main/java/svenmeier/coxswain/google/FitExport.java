@@ -114,7 +114,7 @@ public class FitExport extends Export<Workout> {
 			toast(context.getString(R.string.googlefit_export_starting));
 			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
 
-			List<Snapshot> snapshots = gym.getSnapshots(workout).list();
+			List<Snapshot> snapshots = gym.getSnapshots(workout);
 
 			try {
 
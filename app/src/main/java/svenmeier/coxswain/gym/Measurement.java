@@ -20,11 +20,44 @@ package svenmeier.coxswain.gym;
  */
 public class Measurement {
 
+    public static final int DURATION = 1;
+    public static final int DISTANCE = 1 << 1;
+    public static final int STROKES = 1 << 2;
+    public static final int ENERGY = 1 << 3;
+    public static final int SPEED = 1 << 4;
+    public static final int PULSE = 1 << 5;
+    public static final int STROKE_RATE = 1 << 6;
+    public static final int POWER = 1 << 7;
+    public static final int STROKE_RATIO = 1 << 8;
+    public static final int ELAPSED = 1 << 9;
+
+    /**
+     * Values that can be targeted by a segment.
+     */
+    public static final int TARGETS = DURATION | DISTANCE | STROKES | ENERGY;
+
+    public static final int ALL = (1 << 10) - 1;
+
+    /**
+     * Maximal extrapolation of elapsed time.
+     */
+    private static final int MAX_EXTRAPOLATION = 1000;
+
     /**
      * seconds
      */
     private int duration;
 
+    /**
+     * milliseconds
+     */
+    private int elapsed;
+
+    /**
+     * {@link System#nanoTime()} of the elapsed time
+     */
+    private long timestamp;
+
     /**
      * meters
      */
@@ -59,11 +92,25 @@ public class Measurement {
 
     private int strokeRatio;
 
+    /**
+     * Mask of values changed since {@link #clearChanged()}.
+     */
+    private int changed;
+
     public Measurement() {
     }
 
     public Measurement(Measurement measurement) {
+        set(measurement);
+    }
+
+    /**
+     * Copy all values from the given measurement, without any changes.
+     */
+    public void set(Measurement measurement) {
         this.duration = measurement.duration;
+        this.elapsed = measurement.elapsed;
+        this.timestamp = measurement.timestamp;
         this.distance = measurement.distance;
         this.strokes = measurement.strokes;
         this.energy = measurement.energy;
@@ -72,10 +119,14 @@ public class Measurement {
         this.strokeRate = measurement.strokeRate;
         this.power = measurement.power;
         this.strokeRatio = measurement.strokeRatio;
+
+        this.changed = 0;
     }
 
     public void reset() {
         duration = 0;
+        elapsed = 0;
+        timestamp = System.nanoTime();
         distance = 0;
         strokes = 0;
         energy = 0;
@@ -86,6 +137,19 @@ public class Measurement {
         power = 0;
 
         strokeRatio = 0;
+
+        changed = ALL;
+    }
+
+    /**
+     * Get the values changed since the last call.
+     *
+     * @return mask of changed values, e.g. {@link #DURATION} | {@link #DISTANCE}
+     */
+    public int clearChanged() {
+        int changed = this.changed;
+        this.changed = 0;
+        return changed;
     }
 
     public boolean hasTarget() {
@@ -96,8 +160,66 @@ public class Measurement {
         return duration;
     }
 
+    /**
+     * Set the duration - the elapsed time is kept if it lies within the given second.
+     */
     public void setDuration(int duration) {
-        this.duration = duration;
+        if (this.duration != duration) {
+            this.duration = duration;
+            changed |= DURATION;
+        }
+
+        if (elapsed / 1000 != duration) {
+            setElapsed(duration * 1000, System.nanoTime());
+        }
+    }
+
+    public int getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Get the elapsed time extrapolated to the given time, if there is any speed.
+     *
+     * @param nanos time as of {@link System#nanoTime()}
+     * @return milliseconds
+     */
+    public int getElapsed(long nanos) {
+        if (speed == 0) {
+            return elapsed;
+        }
+
+        long extrapolation = (nanos - timestamp) / 1000000;
+
+        return elapsed + (int)Math.max(0, Math.min(MAX_EXTRAPOLATION, extrapolation));
+    }
+
+    /**
+     * Get the time of the elapsed time.
+     *
+     * @return time as of {@link System#nanoTime()}
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Set the elapsed time, updating the duration too.
+     *
+     * @param elapsed milliseconds
+     * @param timestamp time as of {@link System#nanoTime()}
+     */
+    public void setElapsed(int elapsed, long timestamp) {
+        if (this.elapsed != elapsed) {
+            this.elapsed = elapsed;
+            this.timestamp = timestamp;
+            changed |= ELAPSED;
+        }
+
+        if (this.duration != elapsed / 1000) {
+            this.duration = elapsed / 1000;
+            changed |= DURATION;
+        }
     }
 
     public int getDistance() {
@@ -105,7 +227,10 @@ public class Measurement {
     }
 
     public void setDistance(int distance) {
-        this.distance = distance;
+        if (this.distance != distance) {
+            this.distance = distance;
+            changed |= DISTANCE;
+        }
     }
 
     public int getStrokes() {
@@ -113,7 +238,10 @@ public class Measurement {
     }
 
     public void setStrokes(int strokes) {
-        this.strokes = strokes;
+        if (this.strokes != strokes) {
+            this.strokes = strokes;
+            changed |= STROKES;
+        }
     }
 
     public int getEnergy() {
@@ -121,7 +249,10 @@ public class Measurement {
     }
 
     public void setEnergy(int energy) {
-        this.energy = energy;
+        if (this.energy != energy) {
+            this.energy = energy;
+            changed |= ENERGY;
+        }
     }
 
     public int getSpeed() {
@@ -129,7 +260,10 @@ public class Measurement {
     }
 
     public void setSpeed(int speed) {
-        this.speed = speed;
+        if (this.speed != speed) {
+            this.speed = speed;
+            changed |= SPEED;
+        }
     }
 
     public int getPulse() {
@@ -137,7 +271,10 @@ public class Measurement {
     }
 
     public void setPulse(int pulse) {
-        this.pulse = pulse;
+        if (this.pulse != pulse) {
+            this.pulse = pulse;
+            changed |= PULSE;
+        }
     }
 
     public int getStrokeRate() {
@@ -145,7 +282,10 @@ public class Measurement {
     }
 
     public void setStrokeRate(int strokeRate) {
-        this.strokeRate = strokeRate;
+        if (this.strokeRate != strokeRate) {
+            this.strokeRate = strokeRate;
+            changed |= STROKE_RATE;
+        }
     }
 
     public int getPower() {
@@ -153,7 +293,10 @@ public class Measurement {
     }
 
     public void setPower(int power) {
-        this.power = power;
+        if (this.power != power) {
+            this.power = power;
+            changed |= POWER;
+        }
     }
 
     public int getStrokeRatio() {
@@ -161,6 +304,9 @@ public class Measurement {
     }
 
     public void setStrokeRatio(int strokeRatio) {
-        this.strokeRatio = strokeRatio;
+        if (this.strokeRatio != strokeRatio) {
+            this.strokeRatio = strokeRatio;
+            changed |= STROKE_RATIO;
+        }
     }
 }
\ No newline at end of file
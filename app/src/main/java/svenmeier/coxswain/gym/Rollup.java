@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.gym;
+
+import java.util.Calendar;
+
+import propoid.core.Property;
+import propoid.core.Propoid;
+
+/**
+ * Totals of evaluated workouts on a single day, either of a program or overall.
+ */
+public class Rollup extends Propoid {
+
+    /**
+     * start of day in local time
+     */
+    public final Property<Long> day = property();
+
+    /**
+     * totals of all workouts, regardless of their program
+     */
+    public final Property<Boolean> overall = property();
+
+    public final Property<Program> program = property();
+
+    /**
+     * count of workouts
+     */
+    public final Property<Integer> count = property();
+
+    /**
+     * seconds
+     */
+    public final Property<Integer> duration = property();
+
+    /**
+     * meters
+     */
+    public final Property<Integer> distance = property();
+
+    public final Property<Integer> strokes = property();
+
+    /**
+     * kilo calories
+     */
+    public final Property<Integer> energy = property();
+
+    public Rollup() {
+        clear();
+    }
+
+    /**
+     * @param day start of day
+     * @param program program or {@code null} for totals of all workouts
+     */
+    public Rollup(long day, Program program) {
+        this.day.set(day);
+        this.overall.set(program == null);
+        this.program.set(program);
+
+        clear();
+    }
+
+    public void clear() {
+        count.set(0);
+        duration.set(0);
+        distance.set(0);
+        strokes.set(0);
+        energy.set(0);
+    }
+
+    public void add(Workout workout) {
+        count.set(count.get() + 1);
+        duration.set(duration.get() + workout.duration.get());
+        distance.set(distance.get() + workout.distance.get());
+        strokes.set(strokes.get() + workout.strokes.get());
+        energy.set(energy.get() + workout.energy.get());
+    }
+
+    public void add(Rollup rollup) {
+        count.set(count.get() + rollup.count.get());
+        duration.set(duration.get() + rollup.duration.get());
+        distance.set(distance.get() + rollup.distance.get());
+        strokes.set(strokes.get() + rollup.strokes.get());
+        energy.set(energy.get() + rollup.energy.get());
+    }
+
+    /**
+     * Get the start of the day of the given time.
+     */
+    public static long day(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Get the start of the day following the given one.
+     */
+    public static long nextDay(long day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(day);
+        calendar.add(Calendar.DATE, 1);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.gym;
+
+/**
+ * Columnar encoding of snapshot values.
+ * <p>
+ * Each column is stored as deltas of consecutive values, zig-zag encoded so small negative
+ * deltas stay small, written as variable-length integers. The data starts with the count of
+ * values, followed by the length and bytes of each column, so a single column can be decoded
+ * without touching the others.
+ */
+public class SnapshotColumns {
+
+    public static final int DISTANCE = 0;
+
+    public static final int STROKES = 1;
+
+    public static final int ENERGY = 2;
+
+    public static final int SPEED = 3;
+
+    public static final int PULSE = 4;
+
+    public static final int STROKE_RATE = 5;
+
+    public static final int STROKE_RATIO = 6;
+
+    public static final int POWER = 7;
+
+    public static final int COLUMNS = 8;
+
+    /**
+     * Index of the minima in {@link #downsample(int)}.
+     */
+    public static final int MINIMUM = 0;
+
+    /**
+     * Index of the averages in {@link #downsample(int)}.
+     */
+    public static final int AVERAGE = 1;
+
+    /**
+     * Index of the maxima in {@link #downsample(int)}.
+     */
+    public static final int MAXIMUM = 2;
+
+    private final byte[] data;
+
+    private final int count;
+
+    /**
+     * Offset of each column in {@link #data}.
+     */
+    private final int[] offsets = new int[COLUMNS];
+
+    public SnapshotColumns(byte[] data) {
+        this.data = data;
+
+        int[] position = new int[]{0};
+
+        count = readVarint(data, position);
+        for (int c = 0; c < COLUMNS; c++) {
+            int length = readVarint(data, position);
+
+            offsets[c] = position[0];
+            position[0] += length;
+        }
+    }
+
+    /**
+     * Get the count of values in each column.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Decode a range of values of one column.
+     *
+     * @param column column to decode, e.g. {@link #DISTANCE}
+     * @param from index of first value, inclusive
+     * @param to index of last value, exclusive
+     * @param values array to decode into, starting at index 0
+     */
+    public void decode(int column, int from, int to, int[] values) {
+        if (from < 0 || to > count || from > to) {
+            throw new IndexOutOfBoundsException(from + "-" + to + " of " + count);
+        }
+
+        int[] position = new int[]{offsets[column]};
+
+        int value = 0;
+        for (int index = 0; index < to; index++) {
+            value += unzigzag(readVarint(data, position));
+
+            if (index >= from) {
+                values[index - from] = value;
+            }
+        }
+    }
+
+    /**
+     * Downsample all columns into buckets of consecutive values, the last bucket might be
+     * partial.
+     *
+     * @param bucket count of values in each bucket
+     * @return encoded minima, averages and maxima of all buckets
+     * @see #MINIMUM
+     * @see #AVERAGE
+     * @see #MAXIMUM
+     */
+    public byte[][] downsample(int bucket) {
+        if (bucket < 1) {
+            throw new IllegalArgumentException("bucket must be positive");
+        }
+
+        int buckets = (count + bucket - 1) / bucket;
+
+        int[][] minima = new int[COLUMNS][buckets];
+        int[][] averages = new int[COLUMNS][buckets];
+        int[][] maxima = new int[COLUMNS][buckets];
+
+        int[] values = new int[count];
+        for (int c = 0; c < COLUMNS; c++) {
+            decode(c, 0, count, values);
+
+            for (int b = 0; b < buckets; b++) {
+                int from = b * bucket;
+                int to = Math.min(from + bucket, count);
+
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                long sum = 0;
+                for (int index = from; index < to; index++) {
+                    int value = values[index];
+
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    sum += value;
+                }
+
+                minima[c][b] = min;
+                averages[c][b] = (int)(sum / (to - from));
+                maxima[c][b] = max;
+            }
+        }
+
+        byte[][] downsampled = new byte[3][];
+        downsampled[MINIMUM] = encode(minima, buckets);
+        downsampled[AVERAGE] = encode(averages, buckets);
+        downsampled[MAXIMUM] = encode(maxima, buckets);
+        return downsampled;
+    }
+
+    /**
+     * Encode columns of values.
+     *
+     * @param columns values of each column, see {@link #COLUMNS}
+     * @param count count of values in each column
+     */
+    public static byte[] encode(int[][] columns, int count) {
+        if (columns.length != COLUMNS) {
+            throw new IllegalArgumentException("expected " + COLUMNS + " columns");
+        }
+
+        Buffer column = new Buffer(count * 2);
+        Buffer data = new Buffer(COLUMNS * count + 16);
+
+        data.writeVarint(count);
+        for (int c = 0; c < COLUMNS; c++) {
+            column.length = 0;
+
+            int previous = 0;
+            for (int index = 0; index < count; index++) {
+                int value = columns[c][index];
+                column.writeVarint(zigzag(value - previous));
+                previous = value;
+            }
+
+            data.writeVarint(column.length);
+            data.write(column.bytes, column.length);
+        }
+
+        byte[] bytes = new byte[data.length];
+        System.arraycopy(data.bytes, 0, bytes, 0, data.length);
+        return bytes;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int readVarint(byte[] data, int[] position) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = data[position[0]++];
+
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * Growing buffer of bytes.
+     */
+    private static class Buffer {
+
+        byte[] bytes;
+
+        int length;
+
+        Buffer(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        void writeVarint(int value) {
+            ensure(5);
+
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte)value;
+        }
+
+        void write(byte[] other, int count) {
+            ensure(count);
+
+            System.arraycopy(other, 0, bytes, length, count);
+            length += count;
+        }
+
+        private void ensure(int count) {
+            if (length + count > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + count)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+    }
+}
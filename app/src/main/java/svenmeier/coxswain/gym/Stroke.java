@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.gym;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single stroke, captured from the start and end events of the rower.
+ */
+public class Stroke {
+
+    /**
+     * Size of a packed stroke in bytes.
+     */
+    public static final int SIZE = 12;
+
+    private static final int MAX_UNSIGNED_SHORT = 0xFFFF;
+
+    /**
+     * milliseconds elapsed in the workout when the stroke started
+     */
+    private final int start;
+
+    /**
+     * milliseconds
+     */
+    private final int drive;
+
+    /**
+     * milliseconds
+     */
+    private final int recovery;
+
+    /**
+     * watts
+     */
+    private final int peakPower;
+
+    /**
+     * meters
+     */
+    private final int distance;
+
+    public Stroke(int start, int drive, int recovery, int peakPower, int distance) {
+        this.start = start;
+        this.drive = clamp(drive);
+        this.recovery = clamp(recovery);
+        this.peakPower = clamp(peakPower);
+        this.distance = clamp(distance);
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getDrive() {
+        return drive;
+    }
+
+    public int getRecovery() {
+        return recovery;
+    }
+
+    public int getPeakPower() {
+        return peakPower;
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    /**
+     * Duration of drive and recovery.
+     *
+     * @return milliseconds
+     */
+    public int getDuration() {
+        return drive + recovery;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("stroke at %d ms: drive %d ms, recovery %d ms, peak %d W, %d m", start, drive, recovery, peakPower, distance);
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(MAX_UNSIGNED_SHORT, value));
+    }
+
+    /**
+     * Pack strokes, each one into {@link #SIZE} bytes: an int start followed by unsigned shorts
+     * for drive, recovery, peak power and distance.
+     */
+    public static byte[] pack(List<Stroke> strokes) {
+        ByteBuffer buffer = ByteBuffer.allocate(strokes.size() * SIZE);
+
+        for (int s = 0; s < strokes.size(); s++) {
+            Stroke stroke = strokes.get(s);
+
+            buffer.putInt(stroke.start);
+            buffer.putShort((short) stroke.drive);
+            buffer.putShort((short) stroke.recovery);
+            buffer.putShort((short) stroke.peakPower);
+            buffer.putShort((short) stroke.distance);
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Unpack strokes.
+     *
+     * @see #pack(List)
+     */
+    public static List<Stroke> unpack(byte[] bytes) {
+        if (bytes.length % SIZE != 0) {
+            throw new IllegalArgumentException("not packed strokes " + bytes.length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        List<Stroke> strokes = new ArrayList<>(bytes.length / SIZE);
+        while (buffer.hasRemaining()) {
+            int start = buffer.getInt();
+            int drive = buffer.getShort() & MAX_UNSIGNED_SHORT;
+            int recovery = buffer.getShort() & MAX_UNSIGNED_SHORT;
+            int peakPower = buffer.getShort() & MAX_UNSIGNED_SHORT;
+            int distance = buffer.getShort() & MAX_UNSIGNED_SHORT;
+
+            strokes.add(new Stroke(start, drive, recovery, peakPower, distance));
+        }
+        return strokes;
+    }
+
+    /**
+     * Listener to strokes.
+     */
+    public interface Listener {
+        void onStroke(Stroke stroke);
+    }
+}
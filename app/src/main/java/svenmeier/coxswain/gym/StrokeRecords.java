@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.gym;
+
+import java.util.List;
+
+import propoid.core.Property;
+import propoid.core.Propoid;
+
+/**
+ * Consecutive strokes of a workout, packed into a single row.
+ *
+ * @see Stroke#pack(List)
+ */
+public class StrokeRecords extends Propoid {
+
+    public final Property<Workout> workout = property();
+
+    /**
+     * index of the first stroke in the workout
+     */
+    public final Property<Integer> first = property();
+
+    /**
+     * count of strokes
+     */
+    public final Property<Integer> count = property();
+
+    public final Property<byte[]> strokes = property();
+
+    public StrokeRecords() {
+    }
+
+    public StrokeRecords(Workout workout, int first, List<Stroke> strokes) {
+        this.workout.set(workout);
+        this.first.set(first);
+        this.count.set(strokes.size());
+        this.strokes.set(Stroke.pack(strokes));
+    }
+
+    public List<Stroke> getStrokes() {
+        return Stroke.unpack(strokes.get());
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.gym;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import propoid.core.Property;
+import propoid.core.Propoid;
+
+/**
+ * All snapshots of a workout in a single row, encoded in {@link SnapshotColumns}.
+ * <p>
+ * Old tracks can be {@link #downsample(int)}d to a coarser resolution, keeping the average,
+ * minimum and maximum of each bucket.
+ */
+public class Track extends Propoid {
+
+    /**
+     * Resolution of a track with one snapshot per second.
+     */
+    public static final int FINE = 1;
+
+    /**
+     * Resolution of a compacted track.
+     */
+    public static final int COARSE = 10;
+
+    public final Property<Workout> workout = property();
+
+    /**
+     * count of snapshots, i.e. seconds
+     */
+    public final Property<Integer> count = property();
+
+    /**
+     * seconds per value in {@link #columns}
+     */
+    public final Property<Integer> resolution = property();
+
+    /**
+     * averages if downsampled
+     */
+    public final Property<byte[]> columns = property();
+
+    /**
+     * minima if downsampled
+     */
+    public final Property<byte[]> minimum = property();
+
+    /**
+     * maxima if downsampled
+     */
+    public final Property<byte[]> maximum = property();
+
+    public Track() {
+    }
+
+    public Track(Workout workout, List<Snapshot> snapshots) {
+        int count = snapshots.size();
+
+        int[][] columns = new int[SnapshotColumns.COLUMNS][count];
+        for (int index = 0; index < count; index++) {
+            Snapshot snapshot = snapshots.get(index);
+
+            columns[SnapshotColumns.DISTANCE][index] = snapshot.distance.get();
+            columns[SnapshotColumns.STROKES][index] = snapshot.strokes.get();
+            columns[SnapshotColumns.ENERGY][index] = snapshot.energy.get();
+            columns[SnapshotColumns.SPEED][index] = snapshot.speed.get();
+            columns[SnapshotColumns.PULSE][index] = snapshot.pulse.get();
+            columns[SnapshotColumns.STROKE_RATE][index] = snapshot.strokeRate.get();
+            columns[SnapshotColumns.STROKE_RATIO][index] = snapshot.strokeRatio.get();
+            columns[SnapshotColumns.POWER][index] = snapshot.power.get();
+        }
+
+        this.workout.set(workout);
+        this.count.set(count);
+        this.resolution.set(FINE);
+        this.columns.set(SnapshotColumns.encode(columns, count));
+    }
+
+    /**
+     * Get the resolution.
+     *
+     * @return seconds per value
+     */
+    public int getResolution() {
+        Integer resolution = this.resolution.get();
+
+        return resolution == null ? FINE : resolution;
+    }
+
+    /**
+     * Downsample into buckets of the given resolution.
+     *
+     * @param resolution seconds per bucket
+     */
+    public void downsample(int resolution) {
+        if (getResolution() != FINE) {
+            throw new IllegalStateException("already downsampled");
+        }
+
+        byte[][] downsampled = new SnapshotColumns(columns.get()).downsample(resolution);
+
+        this.resolution.set(resolution);
+        this.columns.set(downsampled[SnapshotColumns.AVERAGE]);
+        this.minimum.set(downsampled[SnapshotColumns.MINIMUM]);
+        this.maximum.set(downsampled[SnapshotColumns.MAXIMUM]);
+    }
+
+    /**
+     * Get the minima of each bucket.
+     *
+     * @return minima or {@code null} if not downsampled
+     */
+    public SnapshotColumns getMinimum() {
+        return minimum.get() == null ? null : new SnapshotColumns(minimum.get());
+    }
+
+    /**
+     * Get the maxima of each bucket.
+     *
+     * @return maxima or {@code null} if not downsampled
+     */
+    public SnapshotColumns getMaximum() {
+        return maximum.get() == null ? null : new SnapshotColumns(maximum.get());
+    }
+
+    /**
+     * Decode a range of snapshots, one for each second - a downsampled track repeats the average
+     * of each bucket.
+     *
+     * @param from index of first snapshot, inclusive
+     * @param to index of last snapshot, exclusive - limited to the count of snapshots
+     */
+    public List<Snapshot> getSnapshots(int from, int to) {
+        SnapshotColumns decoded = new SnapshotColumns(columns.get());
+        int resolution = getResolution();
+
+        to = Math.min(to, count.get());
+        from = Math.min(from, to);
+
+        int first = from / resolution;
+        int last = Math.min((to + resolution - 1) / resolution, decoded.getCount());
+
+        int[][] columns = new int[SnapshotColumns.COLUMNS][last - first];
+        for (int c = 0; c < SnapshotColumns.COLUMNS; c++) {
+            decoded.decode(c, first, last, columns[c]);
+        }
+
+        List<Snapshot> snapshots = new ArrayList<>(to - from);
+        for (int second = from; second < to; second++) {
+            int index = second / resolution - first;
+
+            Snapshot snapshot = new Snapshot();
+            snapshot.workout.set(workout.get());
+            snapshot.distance.set(columns[SnapshotColumns.DISTANCE][index]);
+            snapshot.strokes.set(columns[SnapshotColumns.STROKES][index]);
+            snapshot.energy.set(columns[SnapshotColumns.ENERGY][index]);
+            snapshot.speed.set(columns[SnapshotColumns.SPEED][index]);
+            snapshot.pulse.set(columns[SnapshotColumns.PULSE][index]);
+            snapshot.strokeRate.set(columns[SnapshotColumns.STROKE_RATE][index]);
+            snapshot.strokeRatio.set(columns[SnapshotColumns.STROKE_RATIO][index]);
+            snapshot.power.set(columns[SnapshotColumns.POWER][index]);
+
+            snapshots.add(snapshot);
+        }
+        return snapshots;
+    }
+}
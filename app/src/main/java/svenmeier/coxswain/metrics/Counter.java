@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free counter.
+ *
+ * @see Metrics#counter(String)
+ */
+public class Counter {
+
+    private final AtomicLong value = new AtomicLong();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.incrementAndGet();
+    }
+
+    public void add(long delta) {
+        value.addAndGet(delta);
+    }
+
+    public long get() {
+        return value.get();
+    }
+
+    void reset() {
+        value.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in fixed buckets.
+ * <p>
+ * Bucket {@code b} counts latencies below {@code 2^b} microseconds, the last bucket counts all
+ * longer latencies.
+ *
+ * @see Metrics#histogram(String)
+ */
+public class Histogram {
+
+    static final int BUCKETS = 24;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram() {
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        buckets.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+
+        long previous;
+        do {
+            previous = max.get();
+        } while (nanos > previous && max.compareAndSet(previous, nanos) == false);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return mean latency in nanoseconds
+     */
+    public long getMean() {
+        long count = this.count.get();
+        return count == 0 ? 0 : total.get() / count;
+    }
+
+    /**
+     * @return maximum latency in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the upper bound of the bucket a percentile falls into.
+     *
+     * @param percentile percentile between 0 and 1
+     * @return latency in nanoseconds
+     */
+    public long getPercentile(double percentile) {
+        long count = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            count += buckets.get(b);
+        }
+
+        long rank = (long)Math.ceil(percentile * count);
+        long cumulative = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            cumulative += buckets.get(b);
+            if (cumulative >= rank && cumulative > 0) {
+                return b == BUCKETS - 1 ? getMax() : Math.min(bound(b), getMax());
+            }
+        }
+        return 0;
+    }
+
+    void reset() {
+        for (int b = 0; b < BUCKETS; b++) {
+            buckets.set(b, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        if (getCount() == 0) {
+            return "none";
+        }
+
+        return String.format(Locale.US, "%d mean %.2f ms p50 %.2f ms p99 %.2f ms max %.2f ms", getCount(), getMean() / 1000000d, getPercentile(0.5) / 1000000d, getPercentile(0.99) / 1000000d, getMax() / 1000000d);
+    }
+
+    static int bucket(long nanos) {
+        long micros = nanos / 1000;
+
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+    }
+
+    /**
+     * Exclusive upper bound of a bucket in nanoseconds.
+     */
+    static long bound(int bucket) {
+        return (1L << bucket) * 1000;
+    }
+}
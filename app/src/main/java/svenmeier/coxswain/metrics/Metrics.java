@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.metrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of {@link Counter}s and {@link Histogram}s.
+ * <p>
+ * Metrics should be looked up once and kept in a field, updating them is lock-free and does not
+ * allocate.
+ */
+public class Metrics {
+
+    private static final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return register(name, new Counter());
+    }
+
+    public static Histogram histogram(String name) {
+        return register(name, new Histogram());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T register(String name, T metric) {
+        Object existing = metrics.putIfAbsent(name, metric);
+        if (existing == null) {
+            return metric;
+        }
+
+        if (existing.getClass() != metric.getClass()) {
+            throw new IllegalArgumentException("metric " + name + " is not a " + metric.getClass().getSimpleName());
+        }
+        return (T)existing;
+    }
+
+    /**
+     * Get the names of all metrics, sorted.
+     */
+    public static List<String> getNames() {
+        List<String> names = new ArrayList<>(metrics.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Get a metric.
+     *
+     * @return counter, histogram or {@code null}
+     */
+    public static Object get(String name) {
+        return metrics.get(name);
+    }
+
+    /**
+     * Reset all metrics, e.g. when a new session starts.
+     */
+    public static void reset() {
+        for (Object metric : metrics.values()) {
+            reset(metric);
+        }
+    }
+
+    /**
+     * Reset the metrics whose names start with any of the given prefixes, e.g. the metrics of a
+     * session only.
+     */
+    public static void reset(String... prefixes) {
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            for (String prefix : prefixes) {
+                if (entry.getKey().startsWith(prefix)) {
+                    reset(entry.getValue());
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void reset(Object metric) {
+        if (metric instanceof Counter) {
+            ((Counter) metric).reset();
+        } else {
+            ((Histogram) metric).reset();
+        }
+    }
+
+    /**
+     * Dump all metrics, one line for each.
+     */
+    public static void dump(Appendable appendable) throws IOException {
+        for (String name : getNames()) {
+            appendable.append(name);
+            appendable.append(' ');
+            appendable.append(String.valueOf(metrics.get(name)));
+            appendable.append('\n');
+        }
+    }
+}
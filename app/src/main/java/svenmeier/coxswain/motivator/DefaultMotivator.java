@@ -48,7 +48,7 @@ public class DefaultMotivator implements Motivator, TextToSpeech.OnInitListener,
 
     private AudioManager audio;
 
-    private boolean initialized;
+    private volatile boolean initialized;
 
     private int spoken = 0;
 
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.rower;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Trace writing binary records asynchronously.
+ * <p>
+ * Records are offered to a {@link TraceQueue}, a background thread writes them in batches to
+ * files of a session. When a file exceeds its maximum size the next file is started, keeping
+ * the last files of the session only. Only the last sessions are kept too.
+ *
+ * @see TraceRecords
+ */
+public class BinaryTrace implements ITrace {
+
+    public static final String SUFFIX = ".bin";
+
+    private static final long WAIT_NANOS = 50 * 1000000L;
+
+    private final File dir;
+
+    private final String prefix;
+
+    private final long session;
+
+    private final long maxSize;
+
+    private final int maxFiles;
+
+    private final TraceQueue queue = new TraceQueue(1024, 256);
+
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    private DataOutputStream output;
+
+    private int part;
+
+    /**
+     * @param dir directory of files
+     * @param prefix prefix of file names
+     * @param maxSize maximum size of each file
+     * @param maxFiles maximum count of files of this session
+     * @param maxSessions maximum count of sessions to keep, including this one
+     */
+    public BinaryTrace(File dir, String prefix, long maxSize, int maxFiles, int maxSessions) throws IOException {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.maxSize = maxSize;
+        this.maxFiles = maxFiles;
+
+        List<Long> sessions = sessions();
+        long session = System.currentTimeMillis();
+        if (sessions.isEmpty() == false) {
+            session = Math.max(session, sessions.get(sessions.size() - 1) + 1);
+        }
+        this.session = session;
+
+        for (int s = 0; s < sessions.size() - (maxSessions - 1); s++) {
+            for (File file : files(sessions.get(s))) {
+                file.delete();
+            }
+        }
+
+        open();
+
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "trace");
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return closed == false;
+    }
+
+    @Override
+    public void comment(CharSequence string) {
+        queue.offer(System.nanoTime(), TraceRecords.COMMENT, string);
+    }
+
+    @Override
+    public void comment(String format, long value) {
+        comment(String.format(format, value));
+    }
+
+    @Override
+    public void comment(String format, long value1, long value2) {
+        comment(String.format(format, value1, value2));
+    }
+
+    @Override
+    public void onOutput(CharSequence string) {
+        queue.offer(System.nanoTime(), TraceRecords.OUTPUT, string);
+    }
+
+    @Override
+    public void onInput(CharSequence string) {
+        queue.offer(System.nanoTime(), TraceRecords.INPUT, string);
+    }
+
+    @Override
+    public void onInput(byte[] bytes, int offset, int length) {
+        queue.offer(System.nanoTime(), (byte)(TraceRecords.INPUT | TraceRecords.RAW), bytes, offset, length);
+    }
+
+    /**
+     * Get the files of this session, oldest first.
+     */
+    public List<File> getFiles() {
+        return files(session);
+    }
+
+    /**
+     * Close - all records offered so far are written before this method returns.
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        try {
+            while (true) {
+                // read flag before draining, so nothing offered before closing is missed
+                boolean last = closed;
+
+                int count = 0;
+                while (queue.poll(output)) {
+                    count++;
+
+                    if (output.size() >= maxSize) {
+                        rotate();
+                    }
+                }
+
+                long dropped = queue.dropped();
+                if (dropped > 0) {
+                    String comment = "dropped " + dropped;
+                    byte[] bytes = comment.getBytes("US-ASCII");
+                    TraceRecords.write(output, System.nanoTime(), TraceRecords.COMMENT, bytes, 0, bytes.length);
+                }
+
+                if (last) {
+                    break;
+                }
+
+                if (count == 0) {
+                    output.flush();
+
+                    LockSupport.parkNanos(WAIT_NANOS);
+                }
+            }
+        } catch (IOException ignore) {
+        } finally {
+            try {
+                output.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        File file = new File(dir, prefix + "-" + session + "-" + part + SUFFIX);
+
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        TraceRecords.writeHeader(output);
+    }
+
+    private void rotate() throws IOException {
+        output.close();
+
+        part++;
+        open();
+
+        List<File> files = getFiles();
+        for (int f = 0; f < files.size() - maxFiles; f++) {
+            files.get(f).delete();
+        }
+    }
+
+    /**
+     * Get all sessions, oldest first.
+     */
+    private List<Long> sessions() {
+        List<Long> sessions = new ArrayList<>();
+
+        String[] names = dir.list();
+        if (names != null) {
+            for (String name : names) {
+                long session = session(name);
+                if (session != -1 && sessions.contains(session) == false) {
+                    sessions.add(session);
+                }
+            }
+        }
+
+        Collections.sort(sessions);
+        return sessions;
+    }
+
+    /**
+     * Get files of a session, oldest first.
+     */
+    private List<File> files(long session) {
+        List<File> files = new ArrayList<>();
+
+        String[] names = dir.list();
+        if (names != null) {
+            List<Integer> parts = new ArrayList<>();
+            for (String name : names) {
+                if (session(name) == session) {
+                    parts.add(part(name));
+                }
+            }
+            Collections.sort(parts);
+
+            for (int part : parts) {
+                files.add(new File(dir, prefix + "-" + session + "-" + part + SUFFIX));
+            }
+        }
+
+        return files;
+    }
+
+    private long session(String name) {
+        String[] segments = segments(name);
+        if (segments == null) {
+            return -1;
+        }
+        return Long.parseLong(segments[0]);
+    }
+
+    private int part(String name) {
+        return Integer.parseInt(segments(name)[1]);
+    }
+
+    /**
+     * Get session and part of a file name.
+     *
+     * @return segments or {@code null} if not a file of this trace
+     */
+    private String[] segments(String name) {
+        if (name.startsWith(prefix + "-") == false || name.endsWith(SUFFIX) == false) {
+            return null;
+        }
+
+        String[] segments = name.substring(prefix.length() + 1, name.length() - SUFFIX.length()).split("-");
+        if (segments.length != 2) {
+            return null;
+        }
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                return null;
+            }
+            for (int c = 0; c < segment.length(); c++) {
+                if (Character.isDigit(segment.charAt(c)) == false) {
+                    return null;
+                }
+            }
+        }
+        return segments;
+    }
+}
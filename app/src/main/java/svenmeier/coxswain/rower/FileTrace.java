@@ -18,65 +18,120 @@ package svenmeier.coxswain.rower;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.Environment;
+import android.util.Log;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
 
 import svenmeier.coxswain.Coxswain;
+import svenmeier.coxswain.metrics.Metrics;
 
-public class FileTrace implements ITrace {
+/**
+ * Trace to binary files, converted to a human-readable {@link #TRACE_FILE} on close, along with
+ * a dump of all {@link Metrics} into {@link #METRICS_FILE}.
+ */
+public class FileTrace extends BinaryTrace {
 
     public static final String TRACE_FILE = "waterrower.trace";
 
-    private final BufferedWriter writer;
+    public static final String METRICS_FILE = "waterrower.metrics";
 
-    public FileTrace(Context context) throws IOException {
-        File dir = Coxswain.getExternalFilesDir(context);
-        dir.mkdirs();
-        dir.setReadable(true, false);
+    private static final String PREFIX = "waterrower";
 
-        File file = new File(dir, TRACE_FILE);
+    private static final long MAX_SIZE = 1024 * 1024;
 
-        writer = new BufferedWriter(new FileWriter(file));
+    private static final int MAX_FILES = 4;
 
-        // input media so file can be found via MTB
-        context.sendBroadcast(new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE, Uri.fromFile(file)));
+    private static final int MAX_SESSIONS = 5;
+
+    private final Context context;
 
+    private final File dir;
+
+    public FileTrace(Context context) throws IOException {
+        this(context, dir(context));
     }
 
-    @Override
-    public void comment(CharSequence string) {
-        trace('#', string);
+    private FileTrace(Context context, File dir) throws IOException {
+        super(dir, PREFIX, MAX_SIZE, MAX_FILES, MAX_SESSIONS);
+
+        this.context = context;
+        this.dir = dir;
     }
 
-    @Override
-    public void onOutput(CharSequence string) {
-        trace('>', string);
+    private static File dir(Context context) {
+        File dir = Coxswain.getExternalFilesDir(context);
+        dir.mkdirs();
+        dir.setReadable(true, false);
+        return dir;
     }
 
     @Override
-    public void onInput(CharSequence string) {
-        trace('<', string);
+    public void close() {
+        super.close();
+
+        final StringBuilder metrics = new StringBuilder();
+        try {
+            Metrics.dump(metrics);
+        } catch (IOException cannotHappen) {
+        }
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                convert();
+
+                dump(metrics);
+            }
+        }).start();
     }
 
-    private void trace(char prefix, CharSequence message) {
+    private void dump(CharSequence metrics) {
+        File file = new File(dir, METRICS_FILE);
+
         try {
-            writer.append(prefix);
-            writer.append(message);
-            writer.append('\n');
-            writer.flush();
-        } catch (IOException ignore) {
+            Writer writer = new FileWriter(file);
+            try {
+                writer.append(metrics);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException ex) {
+            Log.e(Coxswain.TAG, "cannot dump metrics", ex);
+            return;
         }
+
+        context.sendBroadcast(new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE, Uri.fromFile(file)));
     }
 
-    @Override
-    public void close() {
+    private void convert() {
+        File file = new File(dir, TRACE_FILE);
+
         try {
-            writer.close();
-        } catch (IOException ignore) {
+            Writer writer = new BufferedWriter(new FileWriter(file));
+            try {
+                for (File binary : getFiles()) {
+                    InputStream input = new FileInputStream(binary);
+                    try {
+                        TraceRecords.convert(input, writer);
+                    } finally {
+                        input.close();
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException ex) {
+            Log.e(Coxswain.TAG, "cannot convert trace", ex);
+            return;
         }
+
+        // input media so file can be found via MTB
+        context.sendBroadcast(new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE, Uri.fromFile(file)));
     }
 }
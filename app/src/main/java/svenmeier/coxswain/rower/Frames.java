@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.rower;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import svenmeier.coxswain.gym.Measurement;
+
+/**
+ * Lock-free handoff of measurements from a single producer thread to a single consumer thread.
+ * <p>
+ * Three frames are recycled: The producer copies into its back frame and swaps it with the
+ * middle one, the consumer swaps its front frame with the middle one if it was published since.
+ * Thus each side always works on a frame exclusively, and the consumer sees a consistent
+ * measurement that does not change until the next {@link #acquire()}.
+ */
+class Frames {
+
+    /**
+     * Flag of the middle index, when published but not acquired yet.
+     */
+    private static final int PUBLISHED = 1 << 2;
+
+    private static final int INDEX = PUBLISHED - 1;
+
+    private final Measurement[] frames = new Measurement[]{new Measurement(), new Measurement(), new Measurement()};
+
+    /**
+     * Index of the frame owned by the producer.
+     */
+    private int back = 0;
+
+    /**
+     * Index of the frame exchanged between producer and consumer.
+     */
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    /**
+     * Index of the frame owned by the consumer.
+     */
+    private int front = 2;
+
+    /**
+     * Publish a copy of the given measurement - to be called by the producer only.
+     */
+    public void publish(Measurement measurement) {
+        frames[back].set(measurement);
+
+        back = middle.getAndSet(back | PUBLISHED) & INDEX;
+    }
+
+    /**
+     * Acquire the latest published measurement - to be called by the consumer only.
+     *
+     * @return frame that must not be modified, valid until the next call
+     */
+    public Measurement acquire() {
+        if ((middle.get() & PUBLISHED) != 0) {
+            front = middle.getAndSet(front) & INDEX;
+        }
+
+        return frames[front];
+    }
+}
@@ -15,13 +15,44 @@
  */
 package svenmeier.coxswain.rower;
 
+/**
+ * Trace of the communication with a rower.
+ * <p>
+ * Callers on hot paths should not build strings for a disabled trace: either check
+ * {@link #isEnabled()} first, or use the overloads taking primitive arguments and raw bytes,
+ * which are formatted only when actually recorded.
+ */
 public interface ITrace {
 
+    /**
+     * Is anything recorded by this trace.
+     */
+    boolean isEnabled();
+
     void comment(CharSequence string);
 
+    /**
+     * Comment with a formatted value.
+     *
+     * @see String#format(String, Object...)
+     */
+    void comment(String format, long value);
+
+    /**
+     * Comment with two formatted values.
+     *
+     * @see String#format(String, Object...)
+     */
+    void comment(String format, long value1, long value2);
+
     void onOutput(CharSequence string);
 
     void onInput(CharSequence string);
 
+    /**
+     * Input of raw bytes, recorded in hex.
+     */
+    void onInput(byte[] bytes, int offset, int length);
+
     void close();
 }
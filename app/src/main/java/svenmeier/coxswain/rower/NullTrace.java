@@ -17,11 +17,26 @@ package svenmeier.coxswain.rower;
 
 public class NullTrace implements ITrace {
 
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
     @Override
     public void comment(CharSequence string) {
 
     }
 
+    @Override
+    public void comment(String format, long value) {
+
+    }
+
+    @Override
+    public void comment(String format, long value1, long value2) {
+
+    }
+
     @Override
     public void onOutput(CharSequence string) {
 
@@ -32,6 +47,11 @@ public class NullTrace implements ITrace {
 
     }
 
+    @Override
+    public void onInput(byte[] bytes, int offset, int length) {
+
+    }
+
     @Override
     public void close() {
     }
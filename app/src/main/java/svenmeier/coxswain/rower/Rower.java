@@ -20,24 +20,64 @@ import android.os.Handler;
 import android.util.Log;
 import android.widget.Toast;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import propoid.util.content.Preference;
 import svenmeier.coxswain.BuildConfig;
 import svenmeier.coxswain.Coxswain;
+import svenmeier.coxswain.Engine;
 import svenmeier.coxswain.R;
 import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.gym.Stroke;
+import svenmeier.coxswain.metrics.Histogram;
+import svenmeier.coxswain.metrics.Metrics;
 
 /**
  */
-public abstract class Rower extends Measurement {
+public abstract class Rower extends Measurement implements Stroke.Listener {
+
+    private static final Histogram DELIVERY = Metrics.histogram("rower.delivery");
+
+    private static final int NO_HEART_RATE = -1;
 
     private final Handler handler = new Handler();
 
+    /**
+     * Measurements and strokes are processed by the engine.
+     */
+    private final Handler engine = Engine.getHandler();
+
     private final Context context;
 
+    /**
+     * Values changed but not yet published.
+     */
+    private final AtomicInteger unpublished = new AtomicInteger();
+
+    /**
+     * Measurements published to the engine thread.
+     */
+    private final Frames frames = new Frames();
+
+    /**
+     * When the pending measurement was posted.
+     */
+    private volatile long posted;
+
+    /**
+     * Heart rate of a separate sensor, overriding the pulse of the rower - accessed on the
+     * engine only.
+     */
+    private int heartRate = NO_HEART_RATE;
+
     private final Runnable onMeasurement = new Runnable() {
         @Override
         public void run() {
-            callback.onMeasurement(Rower.this);
+            int changed = unpublished.getAndSet(0);
+
+            DELIVERY.record(System.nanoTime() - posted);
+
+            deliver(changed);
         }
     };
 
@@ -98,10 +138,70 @@ public abstract class Rower extends Measurement {
         });
     }
 
+    /**
+     * Notify the callback of changed values, if any.
+     */
     protected void notifyMeasurement() {
-        // prevent piling up
-        handler.removeCallbacks(onMeasurement);
-        handler.post(onMeasurement);
+        int changed = clearChanged();
+        if (changed == 0) {
+            return;
+        }
+
+        frames.publish(this);
+
+        int previous;
+        do {
+            previous = unpublished.get();
+        } while (unpublished.compareAndSet(previous, previous | changed) == false);
+
+        if (previous == 0) {
+            // prevent piling up
+            posted = System.nanoTime();
+            engine.post(onMeasurement);
+        }
+    }
+
+    /**
+     * Deliver the latest frame to the callback - on the engine only.
+     */
+    private void deliver(int changed) {
+        Measurement measurement = frames.acquire();
+        if (heartRate != NO_HEART_RATE) {
+            // owned by the engine until the next acquire
+            measurement.setPulse(heartRate);
+        }
+
+        callback.onMeasurement(measurement, changed);
+    }
+
+    /**
+     * A heart rate was measured by a separate sensor - may be called on any thread.
+     */
+    public void onHeartRate(final int heartRate) {
+        engine.post(new Runnable() {
+            @Override
+            public void run() {
+                if (Rower.this.heartRate == heartRate) {
+                    return;
+                }
+                Rower.this.heartRate = heartRate;
+
+                deliver(Measurement.PULSE);
+            }
+        });
+    }
+
+    /**
+     * Notify the callback of a stroke - strokes are never conflated.
+     */
+    @Override
+    public void onStroke(final Stroke stroke) {
+        engine.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onStroke(stroke);
+            }
+        });
     }
 
     /**
@@ -114,10 +214,19 @@ public abstract class Rower extends Measurement {
         }
     }
 
+    /**
+     * Callback of a rower - measurements and strokes are passed on the {@link Engine} thread.
+     */
     public interface Callback {
         void onConnected();
 
-        void onMeasurement(Measurement measurement);
+        /**
+         * @param changed mask of changed values
+         * @see Measurement#DURATION
+         */
+        void onMeasurement(Measurement measurement, int changed);
+
+        void onStroke(Stroke stroke);
 
         void onDisconnected();
     }
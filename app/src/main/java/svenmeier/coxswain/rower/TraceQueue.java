@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.rower;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free bounded queue of trace records, offered by any thread and polled by a single
+ * consumer.
+ * <p>
+ * Records are copied into preallocated slots, so offering does not allocate. When the queue is
+ * full, records are dropped instead of blocking the offering thread.
+ */
+class TraceQueue {
+
+    private final int mask;
+
+    private final int payloadSize;
+
+    /**
+     * Sequence of each slot, telling producers and the consumer whose turn it is.
+     */
+    private final AtomicLongArray sequences;
+
+    private final long[] timestamps;
+
+    private final byte[] types;
+
+    private final int[] lengths;
+
+    private final byte[] payloads;
+
+    /**
+     * Next position to offer to.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Next position to poll from, consumer only.
+     */
+    private long head;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity count of slots, must be a power of two
+     * @param payloadSize maximum size of a payload, longer payloads are truncated
+     */
+    TraceQueue(int capacity, int payloadSize) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+
+        this.mask = capacity - 1;
+        this.payloadSize = payloadSize;
+
+        sequences = new AtomicLongArray(capacity);
+        for (int s = 0; s < capacity; s++) {
+            sequences.set(s, s);
+        }
+        timestamps = new long[capacity];
+        types = new byte[capacity];
+        lengths = new int[capacity];
+        payloads = new byte[capacity * payloadSize];
+    }
+
+    /**
+     * Offer characters, each one is truncated to a single byte.
+     *
+     * @return {@code false} if the queue is full and the record was dropped
+     */
+    public boolean offer(long timestamp, byte type, CharSequence text) {
+        long position = claim();
+        if (position == -1) {
+            return false;
+        }
+
+        int slot = (int)position & mask;
+        int length = Math.min(text.length(), payloadSize);
+        int offset = slot * payloadSize;
+        for (int c = 0; c < length; c++) {
+            payloads[offset + c] = (byte)text.charAt(c);
+        }
+
+        publish(position, slot, timestamp, type, length);
+        return true;
+    }
+
+    /**
+     * Offer bytes.
+     *
+     * @return {@code false} if the queue is full and the record was dropped
+     */
+    public boolean offer(long timestamp, byte type, byte[] bytes, int offset, int length) {
+        long position = claim();
+        if (position == -1) {
+            return false;
+        }
+
+        int slot = (int)position & mask;
+        length = Math.min(length, payloadSize);
+        System.arraycopy(bytes, offset, payloads, slot * payloadSize, length);
+
+        publish(position, slot, timestamp, type, length);
+        return true;
+    }
+
+    private long claim() {
+        long position = tail.get();
+        while (true) {
+            long sequence = sequences.get((int)position & mask);
+
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (sequence < position) {
+                // not yet polled
+                dropped.incrementAndGet();
+                return -1;
+            } else {
+                // claimed by another producer
+                position = tail.get();
+            }
+        }
+    }
+
+    private void publish(long position, int slot, long timestamp, byte type, int length) {
+        timestamps[slot] = timestamp;
+        types[slot] = type;
+        lengths[slot] = length;
+
+        sequences.lazySet(slot, position + 1);
+    }
+
+    /**
+     * Poll the next record - to be called by the consumer only.
+     *
+     * @param output output to write the record to
+     * @return {@code false} if no record is available
+     * @see TraceRecords#write(DataOutput, long, byte, byte[], int, int)
+     */
+    public boolean poll(DataOutput output) throws IOException {
+        int slot = (int)head & mask;
+        if (sequences.get(slot) != head + 1) {
+            return false;
+        }
+
+        TraceRecords.write(output, timestamps[slot], types[slot], payloads, slot * payloadSize, lengths[slot]);
+
+        sequences.lazySet(slot, head + mask + 1);
+        head++;
+
+        return true;
+    }
+
+    /**
+     * Get and reset the count of dropped records.
+     */
+    public long dropped() {
+        return dropped.getAndSet(0);
+    }
+}
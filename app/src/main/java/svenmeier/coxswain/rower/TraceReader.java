@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.rower;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Reader of traces, either in binary records or in the human-readable format.
+ *
+ * @see TraceRecords
+ */
+public class TraceReader implements Closeable {
+
+    /**
+     * Timestamp of records in the human-readable format.
+     */
+    public static final long UNKNOWN = -1;
+
+    private final InputStream input;
+
+    private DataInputStream binary;
+
+    private BufferedReader text;
+
+    private long timestamp;
+
+    private byte type;
+
+    private String payload;
+
+    public TraceReader(InputStream input) throws IOException {
+        this.input = new BufferedInputStream(input);
+
+        this.input.mark(5);
+        DataInputStream data = new DataInputStream(this.input);
+        boolean isBinary = false;
+        try {
+            isBinary = data.readInt() == TraceRecords.MAGIC && data.readByte() == TraceRecords.VERSION;
+        } catch (EOFException empty) {
+        }
+
+        if (isBinary) {
+            binary = data;
+        } else {
+            this.input.reset();
+            text = new BufferedReader(new InputStreamReader(this.input, "ISO-8859-1"));
+        }
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return {@code false} if there are no more records
+     */
+    public boolean next() throws IOException {
+        if (binary != null) {
+            try {
+                timestamp = binary.readLong();
+            } catch (EOFException end) {
+                return false;
+            }
+            byte raw = binary.readByte();
+            type = (byte)(raw & ~TraceRecords.RAW);
+
+            byte[] bytes = new byte[binary.readUnsignedShort()];
+            binary.readFully(bytes);
+            payload = TraceRecords.text(raw, bytes, bytes.length);
+
+            return true;
+        } else {
+            while (true) {
+                String line = text.readLine();
+                if (line == null) {
+                    return false;
+                }
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                timestamp = UNKNOWN;
+                type = (byte)line.charAt(0);
+                payload = line.substring(1);
+
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Timestamp of the current record.
+     *
+     * @return {@link System#nanoTime()} when recorded, or {@link #UNKNOWN}
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Type of the current record.
+     *
+     * @see TraceRecords#COMMENT
+     * @see TraceRecords#OUTPUT
+     * @see TraceRecords#INPUT
+     */
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * Payload of the current record, raw bytes are rendered in hex.
+     */
+    public String getPayload() {
+        return payload;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.rower;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+import svenmeier.coxswain.util.ByteUtils;
+
+/**
+ * Binary format of trace records.
+ * <p>
+ * Each file starts with a header, followed by records of a {@link System#nanoTime()} timestamp,
+ * a type ('#' comment, '>' output or '<' input), the length of the payload and the payload
+ * itself. Types combined with {@link #RAW} carry raw bytes, rendered in hex when converted.
+ */
+public class TraceRecords {
+
+    public static final int MAGIC = 0x43585452; // CXTR
+
+    public static final byte VERSION = 1;
+
+    public static final byte COMMENT = '#';
+
+    public static final byte OUTPUT = '>';
+
+    public static final byte INPUT = '<';
+
+    /**
+     * Flag of a type with a payload of raw bytes.
+     */
+    public static final byte RAW = (byte)0x80;
+
+    private TraceRecords() {
+    }
+
+    public static void writeHeader(DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+    }
+
+    public static void write(DataOutput output, long timestamp, byte type, byte[] payload, int offset, int length) throws IOException {
+        output.writeLong(timestamp);
+        output.writeByte(type);
+        output.writeShort(length);
+        output.write(payload, offset, length);
+    }
+
+    /**
+     * Convert binary records to the human-readable format, one line for each record.
+     *
+     * @param input binary records including the header
+     * @param writer writer of text
+     */
+    public static void convert(InputStream input, Writer writer) throws IOException {
+        DataInput data = new DataInputStream(input);
+
+        if (data.readInt() != MAGIC) {
+            throw new IOException("not a trace");
+        }
+        if (data.readByte() != VERSION) {
+            throw new IOException("unknown version");
+        }
+
+        byte[] payload = new byte[0xFFFF];
+        while (true) {
+            try {
+                data.readLong();
+            } catch (EOFException end) {
+                break;
+            }
+            byte type = data.readByte();
+            int length = data.readUnsignedShort();
+            data.readFully(payload, 0, length);
+
+            writer.write((char)(type & ~RAW));
+            writer.write(text(type, payload, length));
+            writer.write('\n');
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Get the text of a payload.
+     */
+    static String text(byte type, byte[] payload, int length) throws IOException {
+        if ((type & RAW) != 0) {
+            return ByteUtils.toHex(payload, 0, length);
+        } else {
+            return new String(payload, 0, length, "ISO-8859-1");
+        }
+    }
+}
@@ -25,6 +25,25 @@ public class Field {
 
     public String response;
 
+    /**
+     * Target interval between requests in milliseconds, {@code 0} for as soon as possible.
+     */
+    long interval;
+
+    /**
+     * Time of the last request.
+     */
+    long requested;
+
+    /**
+     * Whether the last request is still waiting for its response.
+     */
+    boolean outstanding;
+
+    private String framed;
+
+    private byte[] frame;
+
     protected Field() {
     }
 
@@ -33,6 +52,24 @@ public class Field {
         this.response = response;
     }
 
+    /**
+     * Get the request terminated with CR LF, computed once for each request.
+     */
+    byte[] frame() {
+        if (framed != request) {
+            frame = new byte[request.length() + 2];
+            int c = 0;
+            for (; c < request.length(); c++) {
+                frame[c] = (byte)request.charAt(c);
+            }
+            frame[c++] = (byte)'\r';
+            frame[c++] = (byte)'\n';
+
+            framed = request;
+        }
+        return frame;
+    }
+
     protected boolean input(String message, Measurement measurement) {
         if (this.response != null && message.startsWith(response)) {
             onInput(message, measurement);
@@ -16,6 +16,8 @@
 package svenmeier.coxswain.rower.wired;
 
 import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.metrics.Histogram;
+import svenmeier.coxswain.metrics.Metrics;
 
 /**
  */
@@ -28,13 +30,54 @@ public abstract class NumberField extends Field {
     protected static final int CODEPOINT_0 = 48;
     protected static final int CODEPOINT_A = 65;
 
+    /**
+     * Default interval between requests.
+     */
+    public static final long DEFAULT_INTERVAL = 250;
+
+    final int address;
+
+    final int size;
+
+    /**
+     * Time of the last update.
+     */
+    long updated;
+
+    /**
+     * Time of the last request not answered yet as of {@link Protocol4.Clock#nanos()}, or
+     * {@code 0}.
+     */
+    long requestedNanos;
+
+    /**
+     * Smoothed interval between updates.
+     */
+    private float updateInterval;
+
+    /**
+     * Intervals between updates, e.g. {@code protocol4.refresh.057}.
+     */
+    private final Histogram refresh;
+
+    NumberField(int address, int size) {
+        this(address, size, DEFAULT_INTERVAL);
+    }
+
     /**
      * @param address memory address
      * @param size data size SINGLE_BYTE, DOUBLE_BYTE or TRIPLE_BYTE
+     * @param interval target interval between requests in milliseconds
      */
-    NumberField(int address, int size) {
+    NumberField(int address, int size, long interval) {
+        this.address = address;
+        this.size = size;
+        this.interval = interval;
+
         String ach = toAscii(address, 3, 16);
 
+        this.refresh = Metrics.histogram("protocol4.refresh." + ach);
+
         switch (size) {
             case 1:
                 this.request = "IRS" + ach;
@@ -58,9 +101,38 @@ public abstract class NumberField extends Field {
         onUpdate(fromAscii(message, response.length()), measurement);
     }
 
+    /**
+     * Note an update.
+     */
+    void updated(long now) {
+        if (updated > 0) {
+            long interval = now - updated;
+            refresh.record(interval * 1000000);
+
+            if (updateInterval == 0) {
+                updateInterval = interval;
+            } else {
+                updateInterval += (interval - updateInterval) / 8;
+            }
+        }
+        updated = now;
+    }
+
+    /**
+     * Get the effective refresh rate.
+     *
+     * @return updates per second, {@code 0} if unknown
+     */
+    public float getRefreshRate() {
+        if (updateInterval <= 0) {
+            return 0;
+        }
+        return 1000f / updateInterval;
+    }
+
     protected abstract void onUpdate(int value, Measurement measurement);
 
-    protected int fromAscii(String data, int start) {
+    protected int fromAscii(CharSequence data, int start) {
         int total = 0;
 
         for (int c = start; c < data.length(); c++) {
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.rower.wired;
+
+/**
+ * Open-addressed table of {@link NumberField}s keyed by size and memory address.
+ */
+class NumberFields {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+
+    private NumberField[] values;
+
+    private int count;
+
+    NumberFields() {
+        this(16);
+    }
+
+    /**
+     * @param capacity initial capacity, must be a power of two
+     */
+    NumberFields(int capacity) {
+        keys = new int[capacity];
+        values = new NumberField[capacity];
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = EMPTY;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the field for the given size and address.
+     *
+     * @return field or {@code null}
+     */
+    public NumberField get(int size, int address) {
+        int key = key(size, address);
+
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            } else if (keys[slot] == EMPTY) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Add a field, replacing any previous field with identical size and address.
+     */
+    public void add(NumberField field) {
+        if ((count + 1) * 2 > keys.length) {
+            grow();
+        }
+
+        int key = key(field.size, field.address);
+
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                values[slot] = field;
+                return;
+            } else if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                values[slot] = field;
+                count++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove a field.
+     */
+    public void remove(NumberField field) {
+        int key = key(field.size, field.address);
+
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            if (keys[slot] == EMPTY) {
+                return;
+            } else if (keys[slot] == key) {
+                if (values[slot] != field) {
+                    // replaced by another field
+                    return;
+                }
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // shift following entries back, so lookups do not stop at the gap
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = null;
+
+        count--;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        NumberField[] oldValues = values;
+
+        keys = new int[oldKeys.length * 2];
+        values = new NumberField[oldValues.length * 2];
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = EMPTY;
+        }
+        count = 0;
+
+        for (int k = 0; k < oldKeys.length; k++) {
+            if (oldKeys[k] != EMPTY) {
+                add(oldValues[k]);
+            }
+        }
+    }
+
+    /**
+     * Addresses have three hex digits, i.e. 12 bits.
+     */
+    static int key(int size, int address) {
+        return (size << 12) | (address & 0xFFF);
+    }
+
+    private static int hash(int key) {
+        return key * 0x9E3779B1 >>> 16;
+    }
+}
@@ -53,7 +53,9 @@ public class PowerCalculator {
 
         int meanPower = getHistoryMean();
         measurement.setPower(meanPower);
-        trace.comment("power mean of " + powerHistory + " + is " + meanPower);
+        if (trace.isEnabled()) {
+            trace.comment("power mean of " + powerHistory + " + is " + meanPower);
+        }
     }
 
     private int getHistoryMean() {
@@ -16,10 +16,11 @@
 package svenmeier.coxswain.rower.wired;
 
 import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.metrics.Counter;
+import svenmeier.coxswain.metrics.Metrics;
 import svenmeier.coxswain.rower.ITrace;
 import svenmeier.coxswain.rower.wired.usb.Consumer;
 import svenmeier.coxswain.rower.wired.usb.ITransfer;
-import svenmeier.coxswain.util.ByteUtils;
 
 public class Protocol3 implements IProtocol {
 
@@ -27,6 +28,17 @@ public class Protocol3 implements IProtocol {
 
     private static final int TIMEOUT = 100;
 
+    /**
+     * Maximum length of a message.
+     */
+    private static final int MAX_MESSAGE = 3;
+
+    private static final Counter BYTES = Metrics.counter("protocol3.bytes");
+
+    private static final Counter MESSAGES = Metrics.counter("protocol3.messages");
+
+    private static final Counter UNRECOGNIZED = Metrics.counter("protocol3.unrecognized");
+
     private final ITrace trace;
 
     private final ITransfer transfer;
@@ -39,6 +51,8 @@ public class Protocol3 implements IProtocol {
 
     private int distanceInDecimeters;
 
+    private final byte[] message = new byte[MAX_MESSAGE];
+
     public final RatioCalculator ratioCalculator = new RatioCalculator();
 
     public Protocol3(ITransfer transfer, ITrace trace) {
@@ -68,6 +82,8 @@ public class Protocol3 implements IProtocol {
     @Override
     public void transfer(Measurement measurement) {
 
+        transfer.await(lastTransfer + throttle);
+
         if (System.currentTimeMillis() - lastTransfer < throttle) {
             return;
         }
@@ -82,14 +98,14 @@ public class Protocol3 implements IProtocol {
                     }
                     measurement.setPulse(consumer.next() & 0xFF);
 
-                    trace.onInput(ByteUtils.toHex(consumer.consumed()));
+                    input(consumer, MESSAGES);
                     continue;
                 case (byte) 0xFC:
                     measurement.setStrokes(measurement.getStrokes() + 1);
 
                     ratioCalculator.strokeEnd(measurement, System.currentTimeMillis());
 
-                    trace.onInput(ByteUtils.toHex(consumer.consumed()));
+                    input(consumer, MESSAGES);
                     continue;
                 case (byte) 0xFD:
                     // 2 bytes voltage not used
@@ -104,7 +120,7 @@ public class Protocol3 implements IProtocol {
 
                     ratioCalculator.strokeStart(measurement, System.currentTimeMillis());
 
-                    trace.onInput(ByteUtils.toHex(consumer.consumed()));
+                    input(consumer, MESSAGES);
                     continue;
                 case (byte) 0xFE:
                     if (!consumer.hasNext()) {
@@ -114,7 +130,7 @@ public class Protocol3 implements IProtocol {
                     distanceInDecimeters += consumer.next() & 0xFF;
                     measurement.setDistance(distanceInDecimeters / 10);
 
-                    trace.onInput(ByteUtils.toHex(consumer.consumed()));
+                    input(consumer, MESSAGES);
                     continue;
                 case (byte) 0xFF:
                     if (!consumer.hasNext()) {
@@ -129,14 +145,34 @@ public class Protocol3 implements IProtocol {
                     measurement.setStrokeRate(strokeRate & 0xFF);
                     measurement.setSpeed((speed & 0xFF) * 10);
 
-                    trace.onInput(ByteUtils.toHex(consumer.consumed()));
+                    input(consumer, MESSAGES);
                     continue;
                 default:
-                    trace.onInput(ByteUtils.toHex(consumer.consumed()));
+                    input(consumer, UNRECOGNIZED);
                     trace.comment("unrecognized");
             }
         }
 
         measurement.setDuration((int) (System.currentTimeMillis() - start) / 1000);
     }
+
+    /**
+     * Release a consumed message, tracing it only if enabled.
+     *
+     * @param counter counter of recognized or unrecognized messages
+     */
+    private void input(Consumer consumer, Counter counter) {
+        BYTES.add(consumer.consumedLength());
+        counter.increment();
+
+        if (trace.isEnabled()) {
+            int length = consumer.consumedLength();
+            for (int i = 0; i < length; i++) {
+                message[i] = consumer.consumedAt(i);
+            }
+            trace.onInput(message, 0, length);
+        }
+
+        consumer.skip();
+    }
 }
@@ -17,8 +17,13 @@ package svenmeier.coxswain.rower.wired;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.gym.Stroke;
+import svenmeier.coxswain.metrics.Counter;
+import svenmeier.coxswain.metrics.Histogram;
+import svenmeier.coxswain.metrics.Metrics;
 import svenmeier.coxswain.rower.ITrace;
 import svenmeier.coxswain.rower.wired.usb.Consumer;
 import svenmeier.coxswain.rower.wired.usb.ITransfer;
@@ -27,22 +32,113 @@ public class Protocol4 implements IProtocol {
 
     public static final String VERSION_UNKOWN = null;
 
-    private static final long DEFAULT_THROTTLE = 25;
+    /**
+     * Minimal time between requests.
+     */
+    private static final long DEFAULT_THROTTLE = 10;
+
+    /**
+     * Maximal time between requests, regardless of the S4 response time.
+     */
+    private static final long MAX_CADENCE = 100;
+
+    /**
+     * Requests not answered in this time are considered lost.
+     */
+    private static final long LOST = 500;
+
+    /**
+     * Tolerance of elapsed time over its extrapolation.
+     */
+    private static final long ELAPSED_TOLERANCE = 100;
+
+    /**
+     * Interval of tracing refresh rates.
+     */
+    private static final long RATES_INTERVAL = 60000;
+
+    /**
+     * Maximal count of outstanding requests when pipelining.
+     */
+    private static final int MAX_OUTSTANDING = 8;
+
+    private static final long FAST = 100;
+
+    private static final long SLOW = 1000;
+
+    private static final Counter BYTES = Metrics.counter("protocol4.bytes");
+
+    private static final Counter MESSAGES = Metrics.counter("protocol4.messages");
+
+    private static final Counter UNRECOGNIZED = Metrics.counter("protocol4.unrecognized");
+
+    private static final Histogram ROUND_TRIP = Metrics.histogram("protocol4.round-trip");
+
+    /**
+     * Clock of the system.
+     */
+    public static final Clock SYSTEM = new Clock() {
+        @Override
+        public long now() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long nanos() {
+            return System.nanoTime();
+        }
+    };
 
     private final ITransfer transfer;
 
     private final ITrace trace;
 
+    private final Clock clock;
+
     private List<Field> fields = new ArrayList<>();
 
+    /**
+     * Fields responding to numbers, dispatched by size and address.
+     */
+    private NumberFields numbers = new NumberFields();
+
+    /**
+     * Fields responding to other messages.
+     */
+    private List<Field> messages = new ArrayList<>();
+
     private RatioCalculator ratioCalculator;
 
     private PowerCalculator powerCalculator;
 
-    private int cycle = 0;
+    private StrokeCalculator strokeCalculator;
 
     private long throttle = DEFAULT_THROTTLE;
 
+    /**
+     * Smoothed S4 response time.
+     */
+    private float responseTime = 0;
+
+    /**
+     * Numbers waiting for their response.
+     */
+    private List<NumberField> outstanding = new ArrayList<>();
+
+    private boolean pipelined = false;
+
+    /**
+     * Packet of request frames.
+     */
+    private final byte[] packet;
+
+    /**
+     * Length of the packet if it could not be produced, retried before anything else.
+     */
+    private int unsent;
+
+    private long lastRates;
+
     private String version = VERSION_UNKOWN;
 
     private boolean resetting;
@@ -53,19 +149,45 @@ public class Protocol4 implements IProtocol {
 
     private long lastDuration = 0;
 
+    /**
+     * Elapsed time of the last accepted hundredths, {@code -1} if none.
+     */
+    private int lastHundredths = -1;
+
+    /**
+     * Time of the last accepted hundredths, as of {@link Clock#nanos()}.
+     */
+    private long lastHundredthsNanos;
+
+    private boolean inPlace = true;
+
+    private final Message message = new Message();
+
     public Protocol4(ITransfer transfer, ITrace aTrace) {
+        this(transfer, aTrace, SYSTEM);
+    }
+
+    /**
+     * @param clock clock for all timing, e.g. of requests and strokes
+     */
+    public Protocol4(ITransfer transfer, ITrace aTrace, Clock clock) {
         this.transfer = transfer;
+        this.clock = clock;
+        this.lastRates = clock.now();
 
         transfer.setTimeout(50);
         transfer.setBaudrate(115200);
 
+        packet = new byte[transfer.getMaxPacketSize()];
+
         this.trace = aTrace;
         aTrace.comment("protocol 4");
 
         this.ratioCalculator = new RatioCalculator();
         this.powerCalculator = new PowerCalculator(trace);
+        this.strokeCalculator = new StrokeCalculator();
 
-        fields.add(new Field("USB", "_WR_") {
+        addField(new Field("USB", "_WR_") {
 
             /**
              * Output once only.
@@ -87,9 +209,7 @@ public class Protocol4 implements IProtocol {
     }
 
     private void onHandshake() {
-        cycle = 0;
-
-        fields.add(new Field("IV?", "IV") {
+        addField(new Field("IV?", "IV") {
 
             /**
              * Output once only.
@@ -109,35 +229,37 @@ public class Protocol4 implements IProtocol {
             }
         });
 
-        fields.add(new Field(null, "PING") {
+        addField(new Field(null, "PING") {
             @Override
             protected void onInput(String message, Measurement measurement) {
-                lastPing = System.currentTimeMillis();
+                lastPing = clock.now();
             }
         });
 
-        fields.add(new Field(null, "ERROR") {
+        addField(new Field(null, "ERROR") {
             @Override
             protected void onInput(String message, Measurement measurement) {
             }
         });
 
-        fields.add(new Field(null, "SS") {
+        addField(new Field(null, "SS") {
             @Override
             protected void onInput(String message, Measurement measurement) {
-                ratioCalculator.strokeStart(measurement, System.currentTimeMillis());
-                powerCalculator.strokeStart(measurement, System.currentTimeMillis());
+                ratioCalculator.strokeStart(measurement, clock.now());
+                powerCalculator.strokeStart(measurement, clock.now());
+                strokeCalculator.strokeStart(measurement, clock.now());
             }
         });
 
-        fields.add(new Field(null, "SE") {
+        addField(new Field(null, "SE") {
             @Override
             protected void onInput(String message, Measurement measurement) {
-                ratioCalculator.strokeEnd(measurement, System.currentTimeMillis());
+                ratioCalculator.strokeEnd(measurement, clock.now());
+                strokeCalculator.strokeEnd(measurement, clock.now());
             }
         });
 
-        fields.add(new NumberField(0x140, NumberField.DOUBLE_BYTE) {
+        addField(new NumberField(0x140, NumberField.DOUBLE_BYTE, FAST) {
             @Override
             protected void onUpdate(int value, Measurement measurement) {
                 if (resetting == false) {
@@ -146,7 +268,7 @@ public class Protocol4 implements IProtocol {
             }
         });
 
-        fields.add(new NumberField(0x057, NumberField.DOUBLE_BYTE) {
+        addField(new NumberField(0x057, NumberField.DOUBLE_BYTE, FAST) {
             @Override
             protected void onUpdate(int value, Measurement measurement) {
                 if (resetting == false) {
@@ -155,7 +277,7 @@ public class Protocol4 implements IProtocol {
             }
         });
 
-        fields.add(new NumberField(0x14A, NumberField.DOUBLE_BYTE) {
+        addField(new NumberField(0x14A, NumberField.DOUBLE_BYTE, FAST) {
             @Override
             protected void onUpdate(int value, Measurement measurement) {
                 if (isIdleNotPaused(value)) {
@@ -166,7 +288,7 @@ public class Protocol4 implements IProtocol {
             }
         });
 
-        fields.add(new NumberField(0x1A9, NumberField.SINGLE_BYTE) {
+        addField(new NumberField(0x1A9, NumberField.SINGLE_BYTE, FAST) {
             @Override
             protected void onUpdate(int value, Measurement measurement) {
                 if (isIdleNotPaused(value)) {
@@ -177,7 +299,7 @@ public class Protocol4 implements IProtocol {
             }
         });
 
-        fields.add(new NumberField(0x1A0, NumberField.SINGLE_BYTE) {
+        addField(new NumberField(0x1A0, NumberField.SINGLE_BYTE, SLOW) {
             @Override
             protected void onUpdate(int value, Measurement measurement) {
                 if (value > 0) {
@@ -187,18 +309,20 @@ public class Protocol4 implements IProtocol {
             }
         });
 
-        fields.add(new NumberField(0x088, NumberField.DOUBLE_BYTE) {
+        addField(new NumberField(0x088, NumberField.DOUBLE_BYTE) {
             @Override
             protected void onUpdate(int value, Measurement measurement) {
                 if (isIdleNotPaused(value)) {
                     powerCalculator.clear(measurement);
+                    strokeCalculator.clear();
                 } else {
                     powerCalculator.power(measurement, value);
+                    strokeCalculator.power(value);
                 }
             }
         });
 
-        fields.add(new NumberField(0x08A, NumberField.TRIPLE_BYTE) {
+        addField(new NumberField(0x08A, NumberField.TRIPLE_BYTE, SLOW) {
             @Override
             protected void onUpdate(int value, Measurement measurement) {
                 if (resetting == false) {
@@ -207,19 +331,52 @@ public class Protocol4 implements IProtocol {
             }
         });
 
-        fields.add(new NumberField(0x1E0, NumberField.SINGLE_BYTE) {
+        addField(new NumberField(0x1E0, NumberField.SINGLE_BYTE, FAST) {
+            /**
+             * Hundredths are sent in decimal representation.
+             */
+            @Override
+            protected int fromAscii(CharSequence data, int start) {
+                int total = 0;
+
+                for (int c = start; c < data.length(); c++) {
+                    total = total * 10 + (data.charAt(c) - CODEPOINT_0);
+                }
+
+                return total;
+            }
+
             @Override
             protected void onUpdate(int value, Measurement measurement) {
-                // duration hundredth
+                if (resetting == false) {
+                    int elapsed = measurement.getDuration() * 1000 + value * 10;
+                    long nanos = clock.nanos();
+
+                    if (lastHundredths >= 0) {
+                        long extrapolated = lastHundredths + (nanos - lastHundredthsNanos) / 1000000 + ELAPSED_TOLERANCE;
+                        if (elapsed > extrapolated) {
+                            // read before the duration rolled over
+                            return;
+                        }
+                    }
+
+                    // behind if read after the duration rolled over, but paired with the previous one
+                    if (elapsed > measurement.getElapsed()) {
+                        measurement.setElapsed(elapsed, nanos);
+
+                        lastHundredths = elapsed;
+                        lastHundredthsNanos = nanos;
+                    }
+                }
             }
         });
 
-        fields.add(new NumberField(0x1E1, NumberField.TRIPLE_BYTE) {
+        addField(new NumberField(0x1E1, NumberField.TRIPLE_BYTE, FAST) {
 			/**
 			 * Duration is sent in decimal representation.
              */
             @Override
-            protected int fromAscii(String data, int start) {
+            protected int fromAscii(CharSequence data, int start) {
                 int total = 0;
 
                 for (int c = start; c < data.length(); c++) {
@@ -237,11 +394,11 @@ public class Protocol4 implements IProtocol {
             @Override
             protected void onUpdate(int value, Measurement measurement) {
                 if (value != measurement.getDuration()) {
-                    lastDuration = System.currentTimeMillis();
+                    lastDuration = clock.now();
                 }
 
-                if (resetting == false) {
-                    measurement.setDuration(value);
+                if (resetting == false && measurement.getElapsed() / 1000 != value) {
+                    measurement.setElapsed(value * 1000, clock.nanos());
                 }
             }
         });
@@ -252,7 +409,7 @@ public class Protocol4 implements IProtocol {
      * values as the S4 does it too.
      */
     private boolean isIdleNotPaused(int value) {
-        long now = System.currentTimeMillis();
+        long now = clock.now();
 
         boolean idle = (now - lastPing) < 2000;
         boolean paused = (now - lastDuration) > 2000;
@@ -260,34 +417,111 @@ public class Protocol4 implements IProtocol {
         return idle && !paused;
     }
 
+    /**
+     * Set the minimal time between requests - the actual cadence follows the response
+     * time of the S4.
+     */
     public void setThrottle(long throttle) {
         this.throttle = throttle;
     }
 
-    public String getVersion() {
-        return version;
+    /**
+     * Get the current time between requests.
+     */
+    public long getCadence() {
+        return Math.max(throttle, Math.min(MAX_CADENCE, (long)responseTime));
     }
 
-    private Field nextField() {
+    /**
+     * Get the effective refresh rate of a number.
+     *
+     * @param address memory address
+     * @return updates per second, {@code 0} if unknown
+     */
+    public float getRefreshRate(int address) {
         for (int f = 0; f < fields.size(); f++) {
-            cycle = cycle % fields.size();
+            Field field = fields.get(f);
+            if (field instanceof NumberField && ((NumberField) field).address == address) {
+                return ((NumberField) field).getRefreshRate();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Decode number responses in place, i.e. without allocating a {@link String} for each
+     * message, defaults to {@code true}.
+     * <p>
+     * Unknown messages are always passed to the {@link Field}s.
+     */
+    public void setInPlace(boolean inPlace) {
+        this.inPlace = inPlace;
+    }
+
+    /**
+     * Pack several number requests into a single packet, defaults to {@code false}.
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Listen to single strokes, captured from stroke start and end messages.
+     */
+    public void setStrokeListener(Stroke.Listener listener) {
+        strokeCalculator.setListener(listener);
+    }
+
+    public String getVersion() {
+        return version;
+    }
 
-            Field field = fields.get(cycle);
+    /**
+     * Get the most overdue field.
+     *
+     * @return field or {@code null} if none is due
+     */
+    private Field nextField(long now) {
+        Field next = null;
+        long nextOverdue = -1;
 
-            cycle++;
+        for (int f = 0; f < fields.size(); f++) {
+            Field field = fields.get(f);
 
-            if (field.request != null) {
-                return field;
+            if (field.request != null && field.outstanding == false) {
+                long overdue = now - (field.requested + field.interval);
+                if (overdue > nextOverdue) {
+                    next = field;
+                    nextOverdue = overdue;
+                }
             }
         }
 
-        return null;
+        return next;
     }
 
     private boolean inputField(Measurement measurement, String message) {
 
         for (int f = 0; f < fields.size(); f++) {
-            if (fields.get(f).input(message, measurement)) {
+            Field field = fields.get(f);
+            if (field.input(message, measurement)) {
+                if (field instanceof NumberField) {
+                    answered((NumberField) field);
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Input a message into fields not responding to numbers.
+     */
+    private boolean inputMessage(Measurement measurement, String message) {
+
+        for (int f = 0; f < messages.size(); f++) {
+            if (messages.get(f).input(message, measurement)) {
                 return true;
             }
         }
@@ -295,54 +529,224 @@ public class Protocol4 implements IProtocol {
         return false;
     }
 
+    /**
+     * Input a number response directly into its {@link NumberField}.
+     */
+    private boolean inputNumber(Measurement measurement, Message message) {
+        if (message.length() < 6 || message.charAt(0) != 'I' || message.charAt(1) != 'D') {
+            return false;
+        }
+
+        int size;
+        switch (message.charAt(2)) {
+            case 'S':
+                size = NumberField.SINGLE_BYTE;
+                break;
+            case 'D':
+                size = NumberField.DOUBLE_BYTE;
+                break;
+            case 'T':
+                size = NumberField.TRIPLE_BYTE;
+                break;
+            default:
+                return false;
+        }
+
+        int address = 0;
+        for (int c = 3; c < 6; c++) {
+            int digit = Character.digit(message.charAt(c), 16);
+            if (digit == -1) {
+                return false;
+            }
+            address = address * 16 + digit;
+        }
+
+        NumberField number = numbers.get(size, address);
+        if (number == null) {
+            return false;
+        }
+        number.onUpdate(number.fromAscii(message, 6), measurement);
+        answered(number);
+
+        return true;
+    }
+
+    /**
+     * A number was answered, recording the round-trip of its request.
+     */
+    private void answered(NumberField number) {
+        number.updated(clock.now());
+
+        if (number.requestedNanos != 0) {
+            ROUND_TRIP.record(clock.nanos() - number.requestedNanos);
+            number.requestedNanos = 0;
+        }
+    }
+
     public void transfer(Measurement measurement) {
 
+        long cadence = getCadence();
+
+        transfer.await(lastTransfer + cadence);
+
         input(measurement);
 
-        if (System.currentTimeMillis() - lastTransfer < throttle) {
+        long now = clock.now();
+
+        respond(now);
+
+        if (now - lastTransfer < cadence) {
             return;
         }
-        lastTransfer = System.currentTimeMillis();
+        lastTransfer = now;
+
+        output(now);
+
+        if (now - lastRates > RATES_INTERVAL) {
+            lastRates = now;
+
+            if (trace.isEnabled()) {
+                traceRates();
+            }
+        }
+    }
+
+    /**
+     * Release answered or lost requests and measure the response time.
+     */
+    private void respond(long now) {
+        for (int o = outstanding.size() - 1; o >= 0; o--) {
+            NumberField field = outstanding.get(o);
+
+            long elapsed = now - field.requested;
+            if (field.updated >= field.requested) {
+                if (responseTime == 0) {
+                    responseTime = elapsed;
+                } else {
+                    responseTime += (elapsed - responseTime) / 8;
+                }
+            } else if (elapsed <= LOST) {
+                continue;
+            }
+
+            field.requestedNanos = 0;
+            field.outstanding = false;
+            outstanding.remove(o);
+        }
+    }
+
+    private void traceRates() {
+        StringBuilder rates = new StringBuilder("cadence ");
+        rates.append(getCadence());
+        rates.append(" ms");
+
+        for (int f = 0; f < fields.size(); f++) {
+            Field field = fields.get(f);
+            if (field instanceof NumberField) {
+                rates.append(String.format(Locale.US, " %03X:%.1f/s", ((NumberField) field).address, ((NumberField) field).getRefreshRate()));
+            }
+        }
 
-        output();
+        trace.comment(rates.toString());
     }
 
-    private void output() {
-        Field field = nextField();
-        if (field != null) {
-            String request = field.request;
+    /**
+     * Output the most overdue field - when pipelining further due numbers are packed into
+     * the same packet.
+     */
+    private void output(long now) {
+        if (unsent > 0) {
+            if (transfer.produce(packet, unsent)) {
+                unsent = 0;
+            }
+            return;
+        }
+
+        if (pipelined && outstanding.size() >= MAX_OUTSTANDING) {
+            return;
+        }
+
+        int length = 0;
 
-            trace.onOutput(request);
+        Field field = nextField(now);
+        while (field != null) {
+            byte[] frame = field.frame();
+            if (length + frame.length > packet.length) {
+                break;
+            }
+
+            trace.onOutput(field.request);
+
+            System.arraycopy(frame, 0, packet, length, frame.length);
+            length += frame.length;
+
+            field.requested = now;
+            if (field instanceof NumberField) {
+                field.outstanding = true;
+                outstanding.add((NumberField) field);
 
-            byte[] output = new byte[request.length() + 2];
-            int c = 0;
-            for (; c < request.length(); c++) {
-                output[c] = (byte)request.charAt(c);
+                ((NumberField) field).requestedNanos = clock.nanos();
             }
-            output[c++] = (byte)'\r';
-            output[c++] = (byte)'\n';
-            transfer.produce(output);
 
             field.onAfterOutput();
+
+            if (pipelined == false || field.outstanding == false || outstanding.size() >= MAX_OUTSTANDING) {
+                break;
+            }
+
+            field = nextField(now);
+            if (field instanceof NumberField == false) {
+                // other requests are sent on their own
+                break;
+            }
+        }
+
+        if (length > 0 && transfer.produce(packet, length) == false) {
+            unsent = length;
         }
     }
 
     private void input(Measurement measurement) {
 
+        int bytes = 0;
+
         Consumer consumer = transfer.consumer();
         while (consumer.hasNext()) {
             char character = (char)consumer.next();
+            bytes++;
             if (character == '\n' || character == '\r') {
-                String message = new String(consumer.consumed()).trim();
-                if (message.isEmpty() == false) {
-                    trace.onInput(message);
-
-                    if (inputField(measurement, message) == false) {
-                        trace.comment("unrecognized");
+                if (inPlace) {
+                    message.wrap(consumer);
+                    if (message.length() > 0) {
+                        trace.onInput(message);
+
+                        if (inputNumber(measurement, message) || inputMessage(measurement, message.toString())) {
+                            MESSAGES.increment();
+                        } else {
+                            UNRECOGNIZED.increment();
+                            trace.comment("unrecognized");
+                        }
+                    }
+                    consumer.skip();
+                } else {
+                    String message = new String(consumer.consumed()).trim();
+                    if (message.isEmpty() == false) {
+                        trace.onInput(message);
+
+                        if (inputField(measurement, message)) {
+                            MESSAGES.increment();
+                        } else {
+                            UNRECOGNIZED.increment();
+                            trace.comment("unrecognized");
+                        }
                     }
                 }
             }
         }
+
+        if (bytes > 0) {
+            BYTES.add(bytes);
+        }
     }
 
     @Override
@@ -363,14 +767,95 @@ public class Protocol4 implements IProtocol {
         // prevent duration, distance and strokes from being read until reset was send
         resetting = true;
 
-        ratioCalculator.clear(System.currentTimeMillis());
+        lastHundredths = -1;
+
+        ratioCalculator.clear(clock.now());
+        strokeCalculator.clear();
     }
 
     private void addField(Field field) {
         fields.add(field);
+
+        if (field instanceof NumberField) {
+            numbers.add((NumberField) field);
+        } else {
+            messages.add(field);
+        }
     }
 
     private void removeField(Field field) {
         fields.remove(field);
+
+        if (field instanceof NumberField) {
+            numbers.remove((NumberField) field);
+        } else {
+            messages.remove(field);
+        }
+    }
+
+    /**
+     * A trimmed message viewed in place on the consumed bytes.
+     */
+    private static class Message implements CharSequence {
+
+        private Consumer consumer;
+
+        private int start;
+
+        private int end;
+
+        void wrap(Consumer consumer) {
+            this.consumer = consumer;
+
+            start = 0;
+            end = consumer.consumedLength();
+
+            while (start < end && (consumer.consumedAt(start) & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (consumer.consumedAt(end - 1) & 0xFF) <= ' ') {
+                end--;
+            }
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char)(consumer.consumedAt(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[length()];
+            for (int c = 0; c < chars.length; c++) {
+                chars[c] = charAt(c);
+            }
+            return new String(chars);
+        }
+    }
+
+    /**
+     * Source of the current time.
+     */
+    public interface Clock {
+
+        /**
+         * @return milliseconds as of {@link System#currentTimeMillis()}
+         */
+        long now();
+
+        /**
+         * @return nanoseconds as of {@link System#nanoTime()}, for timestamps of measurements
+         */
+        long nanos();
     }
-}
\ No newline at end of file
+}
@@ -58,8 +58,10 @@ public class RatioCalculator {
             pullDuration = (now - start);
             start = now;
 
-            int ratio = Math.min((int) (MULTIPLIER * recoverDuration / pullDuration), MAX);
-            measurement.setStrokeRatio(ratio);
+            if (pullDuration > 0) {
+                int ratio = Math.min((int) (MULTIPLIER * recoverDuration / pullDuration), MAX);
+                measurement.setStrokeRatio(ratio);
+            }
         }
     }
 }
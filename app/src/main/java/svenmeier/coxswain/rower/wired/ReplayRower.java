@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.rower.wired;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import svenmeier.coxswain.Coxswain;
+import svenmeier.coxswain.rower.Rower;
+import svenmeier.coxswain.rower.TraceReader;
+import svenmeier.coxswain.rower.wired.usb.ReplayTransfer;
+
+/**
+ * Rower replaying a trace through {@link Protocol3} or {@link Protocol4}.
+ */
+public class ReplayRower extends Rower implements Runnable {
+
+    /**
+     * Trace to replay, in binary records or the human-readable format.
+     */
+    public static final String REPLAY_FILE = "replay.trace";
+
+    private final Context context;
+
+    private final boolean realtime;
+
+    private final Handler handler = new Handler();
+
+    private TraceReader reader;
+
+    private volatile ReplayTransfer transfer;
+
+    private IProtocol protocol;
+
+    /**
+     * @param realtime replay in real time or as fast as possible
+     */
+    public ReplayRower(Context context, boolean realtime, Callback callback) {
+        super(context, callback);
+
+        this.context = context;
+        this.realtime = realtime;
+    }
+
+    @Override
+    public void open() {
+        if (reader != null) {
+            return;
+        }
+
+        File file = new File(Coxswain.getExternalFilesDir(context), REPLAY_FILE);
+        try {
+            reader = new TraceReader(new FileInputStream(file));
+        } catch (IOException ex) {
+            Log.e(Coxswain.TAG, "cannot open replay " + file, ex);
+
+            callback.onDisconnected();
+            return;
+        }
+
+        trace.comment(String.format("replaying %s", file));
+
+        transfer = new ReplayTransfer(reader, realtime);
+        if (transfer.getProtocol() == 3) {
+            Protocol3 protocol3 = new Protocol3(transfer, trace);
+            if (realtime == false) {
+                protocol3.setThrottle(0);
+            }
+            protocol = protocol3;
+        } else {
+            Protocol4 protocol4 = new Protocol4(transfer, trace);
+            if (realtime == false) {
+                protocol4.setThrottle(0);
+            }
+            protocol4.setStrokeListener(this);
+            protocol = protocol4;
+        }
+
+        callback.onConnected();
+
+        new Thread(this).start();
+    }
+
+    @Override
+    public String getName() {
+        return "Replay";
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+
+        if (protocol != null) {
+            protocol.reset();
+        }
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        long start = System.nanoTime();
+
+        ReplayTransfer transfer = this.transfer;
+        while (this.transfer == transfer && transfer.isFinished() == false) {
+            protocol.transfer(this);
+
+            notifyMeasurement();
+        }
+
+        trace.comment("replayed %d inputs in %d ms", transfer.getInputs(), (System.nanoTime() - start) / 1000000);
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (reader != null) {
+                    callback.onDisconnected();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        transfer = null;
+
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException ignore) {
+            }
+            reader = null;
+        }
+
+        super.close();
+    }
+}
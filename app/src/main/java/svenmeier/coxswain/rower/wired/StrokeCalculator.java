@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.rower.wired;
+
+import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.gym.Stroke;
+
+/**
+ * Captures single strokes from stroke start and end events - repeated events are ignored.
+ */
+public class StrokeCalculator {
+
+    private static final long NONE = -1;
+
+    private Stroke.Listener listener;
+
+    /**
+     * When the current stroke started.
+     */
+    private long start = NONE;
+
+    /**
+     * When the drive of the current stroke ended.
+     */
+    private long end = NONE;
+
+    private int elapsed;
+
+    private int distance;
+
+    private int peakPower;
+
+    public void setListener(Stroke.Listener listener) {
+        this.listener = listener;
+    }
+
+    public void clear() {
+        start = NONE;
+        end = NONE;
+
+        peakPower = 0;
+    }
+
+    public void power(int power) {
+        peakPower = Math.max(peakPower, power);
+    }
+
+    public void strokeStart(Measurement measurement, long now) {
+        if (start != NONE && end == NONE) {
+            // still pulling
+            return;
+        }
+
+        if (start != NONE && listener != null) {
+            listener.onStroke(new Stroke(elapsed, (int)(end - start), (int)(now - end), peakPower, measurement.getDistance() - distance));
+        }
+
+        start = now;
+        end = NONE;
+
+        elapsed = measurement.getElapsed();
+        distance = measurement.getDistance();
+        peakPower = 0;
+    }
+
+    public void strokeEnd(Measurement measurement, long now) {
+        if (start != NONE && end == NONE) {
+            end = now;
+        }
+    }
+}
@@ -25,6 +25,7 @@ import android.hardware.usb.UsbDeviceConnection;
 import android.hardware.usb.UsbEndpoint;
 import android.hardware.usb.UsbInterface;
 import android.hardware.usb.UsbManager;
+import android.os.Build;
 import android.os.Process;
 import android.util.Log;
 
@@ -36,6 +37,7 @@ import svenmeier.coxswain.rower.FileTrace;
 import svenmeier.coxswain.rower.NullTrace;
 import svenmeier.coxswain.rower.Rower;
 import svenmeier.coxswain.rower.wired.usb.ITransfer;
+import svenmeier.coxswain.rower.wired.usb.UsbRequestTransfer;
 import svenmeier.coxswain.rower.wired.usb.UsbTransfer;
 
 /**
@@ -55,6 +57,11 @@ public class UsbRower extends Rower implements Runnable {
 
     private BroadcastReceiver receiver;
 
+    /**
+     * Thread transferring with the rower, {@code null} when closed.
+     */
+    private volatile Thread thread;
+
     public UsbRower(Context context, UsbDevice device, Callback callback) {
         super(context, callback);
         
@@ -101,12 +108,16 @@ public class UsbRower extends Rower implements Runnable {
         if (Preference.getBoolean(context, R.string.preference_hardware_legacy).get()) {
             protocol = new Protocol3(transfer, trace);
         } else {
-            protocol = new Protocol4(transfer, trace);
+            Protocol4 protocol4 = new Protocol4(transfer, trace);
+            protocol4.setPipelined(Preference.getBoolean(context, R.string.preference_hardware_pipelined).get());
+            protocol4.setStrokeListener(this);
+            protocol = protocol4;
         }
 
         callback.onConnected();
 
-        new Thread(this).start();
+        thread = new Thread(this, "usb");
+        thread.start();
     }
 
     @Override
@@ -116,6 +127,28 @@ public class UsbRower extends Rower implements Runnable {
 
     @Override
     public void close() {
+        Thread thread = this.thread;
+        this.thread = null;
+        if (thread != null && thread != Thread.currentThread()) {
+            // no transfer must be in progress when its requests are cancelled
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (this.transfer instanceof UsbRequestTransfer) {
+            ((UsbRequestTransfer) this.transfer).close();
+        }
+
         super.close();
 
     	if (receiver != null) {
@@ -142,7 +175,7 @@ public class UsbRower extends Rower implements Runnable {
     public void run() {
 		Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
 
-        while (connection != null) {
+        while (thread == Thread.currentThread()) {
             protocol.transfer(this);
 
             notifyMeasurement();
@@ -180,14 +213,19 @@ public class UsbRower extends Rower implements Runnable {
 
             if (out != null && in != null) {
                 if (this.connection.claimInterface(anInterface, true)) {
-                    trace.comment(String.format("claimed interface %s", interfaceId));
-                    transfer = new UsbTransfer(connection, in, out);
+                    trace.comment("claimed interface %d", interfaceId);
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                        // requests can be waited for with timeout
+                        transfer = new UsbRequestTransfer(connection, in, out);
+                    } else {
+                        transfer = new UsbTransfer(connection, in, out);
+                    }
                     return true;
                 } else {
-                    trace.comment(String.format("cannot claim interface %s", interfaceId));
+                    trace.comment("cannot claim interface %d", interfaceId);
                 }
             } else {
-                trace.comment(String.format("no bulk endpoints %s", interfaceId));
+                trace.comment("no bulk endpoints %d", interfaceId);
             }
         }
 
@@ -1,44 +1,177 @@
 package svenmeier.coxswain.rower.wired.usb;
 
-import android.hardware.usb.UsbDeviceConnection;
-import android.hardware.usb.UsbEndpoint;
-
 /**
+ * Ring buffer of received bytes.
+ * <p>
+ * A transfer produces bytes into the ring, a protocol consumes them with {@link #next()}, until a
+ * complete message is recognized. The message can then be read in place with
+ * {@link #consumedAt(int)} and released with {@link #skip()}.
  */
-public abstract class Consumer {
+public class Consumer {
+
+	private final byte[] buffer;
+
+	private final int mask;
+
+	/**
+	 * Start of the current message.
+	 */
+	private int head = 0;
+
+	/**
+	 * Next byte to consume.
+	 */
+	private int index = 0;
+
+	/**
+	 * End of produced bytes.
+	 */
+	private int tail = 0;
+
+	/**
+	 * @param capacity minimal capacity, rounded up to a power of two
+	 */
+	public Consumer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+		this.buffer = new byte[size];
+		this.mask = size - 1;
+	}
+
+	public int capacity() {
+		return buffer.length;
+	}
+
+	/**
+	 * Count of bytes that can still be produced.
+	 */
+	public int free() {
+		return buffer.length - (tail - head);
+	}
+
+	/**
+	 * Produce bytes into this ring.
+	 *
+	 * @return count of bytes actually produced, limited by {@link #free()}
+	 */
+	public int produce(byte[] bytes, int offset, int length) {
+		length = Math.min(length, free());
+
+		int start = tail & mask;
+		int first = Math.min(length, buffer.length - start);
+		System.arraycopy(bytes, offset, buffer, start, first);
+		System.arraycopy(bytes, offset + first, buffer, 0, length - first);
+
+		tail += length;
+
+		return length;
+	}
+
+	/**
+	 * Get the backing array for producing in place.
+	 *
+	 * @see #produceOffset()
+	 * @see #produceLength()
+	 * @see #produced(int)
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Offset in {@link #getBuffer()} to produce to.
+	 */
+	public int produceOffset() {
+		return tail & mask;
+	}
+
+	/**
+	 * Count of bytes that can be produced contiguously from {@link #produceOffset()}.
+	 */
+	public int produceLength() {
+		return Math.min(free(), buffer.length - (tail & mask));
+	}
 
-	int index = 0;
+	/**
+	 * Bytes were produced in place.
+	 */
+	public void produced(int length) {
+		if (length < 0 || length > produceLength()) {
+			throw new IndexOutOfBoundsException();
+		}
 
-	protected abstract byte[] getBuffer();
+		tail += length;
+	}
 
-	protected abstract int getBufferLength();
+	/**
+	 * Restart consumption at the start of the current message - to be called by
+	 * each {@link ITransfer#consumer()}.
+	 */
+	public void rewind() {
+		index = head;
+	}
 
-	protected abstract void setBufferLength(int bufferLength);
+	/**
+	 * Drop all bytes.
+	 */
+	public void clear() {
+		head = index = tail = 0;
+	}
 
 	public boolean hasNext() {
-		return index < getBufferLength();
+		return index != tail;
 	}
 
 	public byte next() {
-		if (index == getBufferLength()) {
+		if (index == tail) {
 			throw new IndexOutOfBoundsException();
 		}
-		byte b = getBuffer()[index];
+		byte b = buffer[index & mask];
 		index++;
 		return b;
 	}
 
+	/**
+	 * Get a copy of all consumed bytes and release them.
+	 *
+	 * @see #skip()
+	 */
 	public byte[] consumed() {
-		byte[] consumed = new byte[index];
-		System.arraycopy(getBuffer(), 0, consumed, 0, index);
+		byte[] consumed = new byte[consumedLength()];
+		for (int c = 0; c < consumed.length; c++) {
+			consumed[c] = buffer[(head + c) & mask];
+		}
 
-		int bufferLength = getBufferLength();
-		bufferLength -= index;
-		System.arraycopy(getBuffer(), index, getBuffer(), 0, bufferLength);
-		setBufferLength(bufferLength);
+		head = index;
 
-		index = 0;
-		
 		return consumed;
 	}
+
+	/**
+	 * Count of consumed bytes.
+	 */
+	public int consumedLength() {
+		return index - head;
+	}
+
+	/**
+	 * Get a consumed byte without copying.
+	 *
+	 * @param i index of consumed byte
+	 */
+	public byte consumedAt(int i) {
+		if (i >= index - head) {
+			throw new IndexOutOfBoundsException();
+		}
+		return buffer[(head + i) & mask];
+	}
+
+	/**
+	 * Release consumed bytes without returning them.
+	 *
+	 * @see #consumed()
+	 */
+	public void skip() {
+		head = index;
+	}
 }
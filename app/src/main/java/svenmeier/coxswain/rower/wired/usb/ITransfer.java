@@ -22,7 +22,27 @@ public interface ITransfer {
 
 	void setData(int dataBits, int parity, int stopBits, boolean tx);
 
-	void produce(byte[] b);
-	
+	boolean produce(byte[] b);
+
+	/**
+	 * Produce the first bytes only.
+	 *
+	 * @param length count of bytes to produce, at most {@link #getMaxPacketSize()}
+	 * @return whether the bytes were produced, {@code false} if they have to be retried
+	 */
+	boolean produce(byte[] b, int length);
+
+	/**
+	 * Maximal count of bytes produced in a single packet.
+	 */
+	int getMaxPacketSize();
+
+	/**
+	 * Wait for input, at most until the given time.
+	 *
+	 * @param until time as of {@link System#currentTimeMillis()}
+	 */
+	void await(long until);
+
 	Consumer consumer();
 }
\ No newline at end of file
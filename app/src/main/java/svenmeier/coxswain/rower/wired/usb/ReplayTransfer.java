@@ -0,0 +1,238 @@
+package svenmeier.coxswain.rower.wired.usb;
+
+import java.io.IOException;
+
+import svenmeier.coxswain.rower.TraceReader;
+import svenmeier.coxswain.rower.TraceRecords;
+
+/**
+ * Transfer replaying the inputs of a trace.
+ * <p>
+ * Outputs are ignored. Inputs are passed to the protocol either as fast as possible, i.e. one
+ * input for each {@link #consumer()}, or in real time as recorded. Inputs in the human-readable
+ * format have no timestamps, thus they are replayed in an interval of {@link #TEXT_INTERVAL}.
+ */
+public class ReplayTransfer implements ITransfer {
+
+	/**
+	 * Interval of inputs without timestamp in milliseconds.
+	 */
+	public static final long TEXT_INTERVAL = 25;
+
+	private static final String PROTOCOL = "protocol ";
+
+	private final TraceReader reader;
+
+	private final boolean realtime;
+
+	private final Consumer consumer = new Consumer(1024);
+
+	private int protocol = 4;
+
+	/**
+	 * Is the next input pending.
+	 */
+	private boolean pending;
+
+	private boolean finished;
+
+	/**
+	 * Count of replayed inputs.
+	 */
+	private int inputs;
+
+	/**
+	 * {@link System#nanoTime()} of start of replay.
+	 */
+	private long start = -1;
+
+	/**
+	 * Timestamp of the first input.
+	 */
+	private long first = TraceReader.UNKNOWN;
+
+	/**
+	 * @param realtime whether to replay in real time
+	 */
+	public ReplayTransfer(TraceReader reader, boolean realtime) {
+		this.reader = reader;
+		this.realtime = realtime;
+
+		// read comments up to first input
+		advance();
+	}
+
+	/**
+	 * The protocol of the trace as commented before the first input.
+	 *
+	 * @return 3 or 4
+	 */
+	public int getProtocol() {
+		return protocol;
+	}
+
+	/**
+	 * Have all inputs been replayed.
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Count of inputs replayed so far.
+	 */
+	public int getInputs() {
+		return inputs;
+	}
+
+	@Override
+	public void setTimeout(int timeout) {
+	}
+
+	@Override
+	public void setBaudrate(int baudRate) {
+	}
+
+	@Override
+	public void setData(int dataBits, int parity, int stopBits, boolean tx) {
+	}
+
+	@Override
+	public boolean produce(byte[] b) {
+		return true;
+	}
+
+	@Override
+	public boolean produce(byte[] b, int length) {
+		return true;
+	}
+
+	@Override
+	public int getMaxPacketSize() {
+		return 64;
+	}
+
+	/**
+	 * Wait until the given time or the next input is due, when replaying in real time.
+	 */
+	@Override
+	public void await(long until) {
+		if (realtime == false || pending == false) {
+			return;
+		}
+
+		long wait = Math.min(until - System.currentTimeMillis(), (due() - System.nanoTime()) / 1000000);
+		if (wait > 0) {
+			try {
+				Thread.sleep(wait);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public Consumer consumer() {
+		consumer.rewind();
+
+		if (start == -1) {
+			start = System.nanoTime();
+		}
+
+		if (realtime) {
+			long now = System.nanoTime();
+			while (pending && due() <= now) {
+				if (input() == false) {
+					// no space left
+					break;
+				}
+			}
+		} else {
+			if (pending) {
+				input();
+			}
+		}
+
+		return consumer;
+	}
+
+	/**
+	 * When the pending input is due.
+	 */
+	private long due() {
+		long offset;
+		if (reader.getTimestamp() == TraceReader.UNKNOWN) {
+			offset = inputs * TEXT_INTERVAL * 1000000;
+		} else {
+			if (first == TraceReader.UNKNOWN) {
+				first = reader.getTimestamp();
+			}
+			offset = reader.getTimestamp() - first;
+		}
+		return start + offset;
+	}
+
+	/**
+	 * Pass the pending input into the consumer.
+	 *
+	 * @return {@code false} if there is not enough space
+	 */
+	private boolean input() {
+		String payload = reader.getPayload();
+
+		if (protocol == 3) {
+			String[] hexes = payload.trim().split("\\s+");
+			if (consumer.free() < hexes.length) {
+				return false;
+			}
+			for (String hex : hexes) {
+				try {
+					produce((byte) Integer.parseInt(hex, 16));
+				} catch (NumberFormatException emptyOrGarbled) {
+				}
+			}
+		} else {
+			if (consumer.free() < payload.length() + 2) {
+				return false;
+			}
+			for (int c = 0; c < payload.length(); c++) {
+				produce((byte) payload.charAt(c));
+			}
+			produce((byte) '\r');
+			produce((byte) '\n');
+		}
+
+		inputs++;
+
+		advance();
+
+		return true;
+	}
+
+	private void produce(byte b) {
+		consumer.getBuffer()[consumer.produceOffset()] = b;
+		consumer.produced(1);
+	}
+
+	/**
+	 * Advance to the next input.
+	 */
+	private void advance() {
+		pending = false;
+
+		try {
+			while (reader.next()) {
+				byte type = reader.getType();
+				if (type == TraceRecords.INPUT) {
+					pending = true;
+					return;
+				} else if (type == TraceRecords.COMMENT && reader.getPayload().startsWith(PROTOCOL)) {
+					protocol = Integer.parseInt(reader.getPayload().substring(PROTOCOL.length()).trim());
+				}
+			}
+		} catch (IOException | NumberFormatException ex) {
+		}
+
+		finished = true;
+	}
+}
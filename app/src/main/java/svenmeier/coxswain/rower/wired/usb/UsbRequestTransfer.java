@@ -0,0 +1,161 @@
+package svenmeier.coxswain.rower.wired.usb;
+
+import android.annotation.TargetApi;
+import android.hardware.usb.UsbDeviceConnection;
+import android.hardware.usb.UsbEndpoint;
+import android.hardware.usb.UsbRequest;
+import android.os.Build;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Transfer with queued {@link UsbRequest}s instead of blocking bulk transfers.
+ * <p>
+ * A read is always pending, so {@link #await(long)} returns as soon as bytes arrive. Writes
+ * are queued too and do not wait for completion, unless all of them are still pending.
+ */
+@TargetApi(Build.VERSION_CODES.O)
+public class UsbRequestTransfer extends UsbTransfer {
+
+	/**
+	 * Count of writes that may be pending at the same time.
+	 */
+	private static final int WRITES = 4;
+
+	private final UsbRequest read;
+
+	private final ByteBuffer readBuffer;
+
+	/**
+	 * Writes not pending currently.
+	 */
+	private final ArrayDeque<UsbRequest> writes = new ArrayDeque<>();
+
+	private final UsbRequest[] allWrites = new UsbRequest[WRITES];
+
+	public UsbRequestTransfer(UsbDeviceConnection connection, UsbEndpoint input, UsbEndpoint output) {
+		super(connection, input, output);
+
+		readBuffer = ByteBuffer.allocate(input.getMaxPacketSize());
+		read = new UsbRequest();
+		read.initialize(connection, input);
+		queueRead();
+
+		for (int w = 0; w < WRITES; w++) {
+			UsbRequest write = new UsbRequest();
+			write.initialize(connection, output);
+			write.setClientData(ByteBuffer.allocate(output.getMaxPacketSize()));
+			writes.add(write);
+
+			allWrites[w] = write;
+		}
+	}
+
+	/**
+	 * Queue a write, waiting for a pending one to complete if necessary.
+	 *
+	 * @return {@code false} if all writes are still pending after the timeout
+	 */
+	@Override
+	public boolean produce(byte[] b, int length) {
+		long until = System.currentTimeMillis() + timeout;
+		while (writes.isEmpty()) {
+			if (complete(until - System.currentTimeMillis()) == null) {
+				// all writes still pending
+				return false;
+			}
+		}
+
+		UsbRequest write = writes.poll();
+
+		ByteBuffer buffer = (ByteBuffer) write.getClientData();
+		buffer.clear();
+		buffer.put(b, 0, Math.min(length, buffer.capacity()));
+		buffer.flip();
+
+		if (write.queue(buffer) == false) {
+			writes.add(write);
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Wait until a read completes or the given time is reached.
+	 */
+	@Override
+	public void await(long until) {
+		while (true) {
+			UsbRequest request = complete(until - System.currentTimeMillis());
+			if (request == null || request == read) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Input was read in {@link #await(long)} already.
+	 */
+	@Override
+	public Consumer consumer() {
+		consumer.rewind();
+
+		return consumer;
+	}
+
+	/**
+	 * Wait for the completion of a single request.
+	 *
+	 * @param wait milliseconds to wait, does not wait if not positive
+	 * @return completed request or {@code null}
+	 */
+	private UsbRequest complete(long wait) {
+		UsbRequest request;
+		try {
+			request = connection.requestWait(Math.max(0, wait));
+		} catch (TimeoutException nothingCompleted) {
+			return null;
+		} catch (IllegalArgumentException closed) {
+			return null;
+		}
+
+		if (request == read) {
+			int length = readBuffer.position();
+			if (length > 0) {
+				if (consumer.free() < length) {
+					// no delimiter in a full ring, so drop garbage
+					consumer.clear();
+				}
+				consumer.produce(readBuffer.array(), 0, length);
+			}
+
+			queueRead();
+		} else if (request != null) {
+			writes.add(request);
+		}
+
+		return request;
+	}
+
+	private void queueRead() {
+		readBuffer.clear();
+		read.queue(readBuffer);
+	}
+
+	/**
+	 * Cancel all requests.
+	 */
+	public void close() {
+		read.cancel();
+		read.close();
+
+		for (UsbRequest write : allWrites) {
+			write.cancel();
+			write.close();
+		}
+		writes.clear();
+	}
+}
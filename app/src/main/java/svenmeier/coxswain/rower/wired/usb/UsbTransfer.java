@@ -2,6 +2,7 @@ package svenmeier.coxswain.rower.wired.usb;
 
 import android.hardware.usb.UsbDeviceConnection;
 import android.hardware.usb.UsbEndpoint;
+import android.os.Build;
 
 /**
  */
@@ -21,15 +22,23 @@ public class UsbTransfer implements ITransfer {
 	private static final int PURGE_RX = 1;
 	private static final int PURGE_TX = 2;
 
-	private final UsbDeviceConnection connection;
-	private final UsbEndpoint output;
-	private final UsbEndpoint input;
+	/**
+	 * Capacity of ring buffer in packets.
+	 */
+	private static final int PACKETS = 8;
 
-	private byte[] buffer;
-	private int bufferLength = 0;
-	private byte[] bufferBulk;
+	protected final UsbDeviceConnection connection;
+	protected final UsbEndpoint output;
+	protected final UsbEndpoint input;
 
-	private int timeout;
+	protected final Consumer consumer;
+
+	/**
+	 * Intermediate buffer, when reading in place is not possible.
+	 */
+	private final byte[] bufferBulk;
+
+	protected int timeout;
 
 	public UsbTransfer(UsbDeviceConnection connection, UsbEndpoint input, UsbEndpoint output) {
 		this.connection = connection;
@@ -37,8 +46,8 @@ public class UsbTransfer implements ITransfer {
 		this.input = input;
 		this.output = output;
 
-		this.buffer = new byte[Math.min(output.getMaxPacketSize(), input.getMaxPacketSize())];
-		this.bufferBulk = new byte[buffer.length];
+		this.bufferBulk = new byte[Math.min(output.getMaxPacketSize(), input.getMaxPacketSize())];
+		this.consumer = new Consumer(bufferBulk.length * PACKETS);
 
 		// clear
 		this.connection.controlTransfer(SET_DATA_REQUEST_TYPE, CLEAR, RESET, 0, null, 0, timeout);
@@ -66,34 +75,50 @@ public class UsbTransfer implements ITransfer {
 	}
 
 	@Override
-	public void produce(byte[] b) {
-		connection.bulkTransfer(output, b, b.length, timeout);
+	public boolean produce(byte[] b) {
+		return produce(b, b.length);
+	}
+
+	@Override
+	public boolean produce(byte[] b, int length) {
+		return connection.bulkTransfer(output, b, length, timeout) >= 0;
+	}
+
+	@Override
+	public int getMaxPacketSize() {
+		return output.getMaxPacketSize();
+	}
+
+	/**
+	 * Nothing to wait for, since {@link #consumer()} blocks on the bulk transfer.
+	 */
+	@Override
+	public void await(long until) {
 	}
 
 	@Override
 	public Consumer consumer() {
-		final int length = connection.bulkTransfer(input, bufferBulk, bufferBulk.length - bufferLength, timeout);
-		if (length != -1) {
-			System.arraycopy(bufferBulk, 0, buffer, bufferLength, length);
-			bufferLength += length;
+		consumer.rewind();
+
+		if (consumer.free() == 0) {
+			// no delimiter in a full ring, so drop garbage
+			consumer.clear();
 		}
 
-		return new Consumer() {
-			@Override
-			protected byte[] getBuffer() {
-				return buffer;
+		if (consumer.produceLength() >= bufferBulk.length && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+			// read in place
+			int length = connection.bulkTransfer(input, consumer.getBuffer(), consumer.produceOffset(), bufferBulk.length, timeout);
+			if (length > 0) {
+				consumer.produced(length);
 			}
-
-			@Override
-			protected int getBufferLength() {
-				return bufferLength;
+		} else {
+			int length = connection.bulkTransfer(input, bufferBulk, Math.min(bufferBulk.length, consumer.free()), timeout);
+			if (length > 0) {
+				consumer.produce(bufferBulk, 0, length);
 			}
+		}
 
-			@Override
-			protected void setBufferLength(int bufferLength) {
-				UsbTransfer.this.bufferLength = bufferLength;
-			}
-		};
+		return consumer;
 	}
 
 	public static int divisor(int baudrate) {
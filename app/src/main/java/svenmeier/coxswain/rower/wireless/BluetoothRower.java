@@ -29,7 +29,7 @@ import svenmeier.coxswain.Coxswain;
 import svenmeier.coxswain.R;
 import svenmeier.coxswain.bluetooth.BlueWriter;
 import svenmeier.coxswain.bluetooth.BluetoothActivity;
-import svenmeier.coxswain.bluetooth.Fields;
+import svenmeier.coxswain.gym.Measurement;
 import svenmeier.coxswain.rower.Rower;
 import svenmeier.coxswain.util.ByteUtils;
 import svenmeier.coxswain.util.PermissionBlock;
@@ -62,6 +62,8 @@ public class BluetoothRower extends Rower {
 
 	private int previousElapsedTime;
 
+	private final RowerData decoder = new RowerData();
+
 	public BluetoothRower(Context context, Callback callback) {
 		super(context, callback);
 
@@ -521,10 +523,10 @@ public class BluetoothRower extends Rower {
 					if (controlPoint == null) {
 						trace.comment("no control-point");
 					} else {
-						trace.onOutput(String.format("control-point enabling indication"));
+						trace.onOutput("control-point enabling indication");
 						enableIndication(connected, controlPoint);
 
-						trace.onOutput(String.format("control-point requesting control"));
+						trace.onOutput("control-point requesting control");
 						write(connected, controlPoint, OP_CODE_REQUEST_CONTROL);
 
 						if (resetting == true) {
@@ -543,123 +545,103 @@ public class BluetoothRower extends Rower {
 			super.onCharacteristicRead(gatt, characteristic, status);
 		}
 
-		private static final int MORE_DATA = 0;
-		private static final int AVERAGE_STROKE_RATE = 1;
-		private static final int TOTAL_DISTANCE = 2;
-		private static final int INSTANTANEOUS_PACE = 3;
-		private static final int AVERAGE_PACE = 4;
-		private static final int INSTANTANEOUS_POWER = 5;
-		private static final int AVERAGE_POWER = 6;
-		private static final int RESISTANCE_LEVEL = 7;
-		private static final int EXPANDED_ENERGY = 8;
-		private static final int HEART_RATE = 9;
-		private static final int METABOLIC_EQUIVALENT = 10;
-		private static final int ELAPSED_TIME = 11;
-		private static final int REMAINING_TIME = 12;
-
+		/**
+		 * Only the characteristics are looked up under the monitor, rower data is decoded outside
+		 * of it - notifications are delivered on a single binder thread.
+		 */
 		@Override
-		public synchronized void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
-			if (rowerData == null) {
-				return;
-			}
+		public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+			synchronized (this) {
+				if (rowerData == null) {
+					return;
+				}
 
-			if (controlPoint != null && characteristic.getUuid().equals(controlPoint.getUuid())) {
-				trace.onInput(String.format("control-point changed %s", ByteUtils.toHex(characteristic.getValue())));
-			} else if (lowBattery != null && characteristic.getUuid().equals(lowBattery.getUuid())) {
-				trace.onInput(String.format("low-battery changed"));
+				if (controlPoint != null && characteristic.getUuid().equals(controlPoint.getUuid())) {
+					if (trace.isEnabled()) {
+						trace.onInput(String.format("control-point changed %s", ByteUtils.toHex(characteristic.getValue())));
+					}
+					return;
+				} else if (lowBattery != null && characteristic.getUuid().equals(lowBattery.getUuid())) {
+					trace.onInput("low-battery changed");
 
-				// level is not known
-				onBatteryLevel(10);
+					// level is not known
+					onBatteryLevel(10);
 
-				// prevent further notifications
-				lowBattery = null;
-			} else if (rowerData != null && characteristic.getUuid().equals(rowerData.getUuid())) {
+					// prevent further notifications
+					lowBattery = null;
+					return;
+				} else if (characteristic.getUuid().equals(rowerData.getUuid()) == false) {
+					return;
+				}
+			}
+
+			if (trace.isEnabled()) {
 				trace.onInput(String.format("rower-data changed %s", ByteUtils.toHex(characteristic.getValue())));
+			}
 
-				keepAlive.onNotification();
+			keepAlive.onNotification();
 
-				int duration = getDuration();
-				int distance = getDistance();
-				int strokes = getStrokes();
-				int energy = getEnergy();
+			if (decoder.decode(characteristic.getValue()) == false) {
+				// wait for more data
+				return;
+			}
 
-				Fields fields = new Fields(characteristic, Fields.UINT16);
-				try {
-					if (fields.flag(MORE_DATA) == false) {
-						setStrokeRate(fields.get(Fields.UINT8) / 2);
+			if (decoder.isMismatch()) {
+				// rarely flags and fields do not match up
+				trace.comment("field mismatch");
+			}
 
-						strokes = fields.get(Fields.UINT16);
-					}
-					if (fields.flag(AVERAGE_STROKE_RATE)) {
-						fields.get(Fields.UINT8);
-					}
-					if (fields.flag(TOTAL_DISTANCE)) {
-						distance = fields.get(Fields.UINT16) +
-								(fields.get(Fields.UINT8) << 16);
-					}
-					if (fields.flag(INSTANTANEOUS_PACE)) {
-						int instantaneousPace = fields.get(Fields.UINT16);
-						if (instantaneousPace == 0) {
-							setSpeed(0);
-						} else {
-							setSpeed(500 * 100 / instantaneousPace);
-						}
-					}
-					if (fields.flag(AVERAGE_PACE)) {
-						fields.skip(Fields.UINT16);
-					}
-					if (fields.flag(INSTANTANEOUS_POWER)) {
-						setPower(fields.get(Fields.SINT16));
-					}
-					if (fields.flag(AVERAGE_POWER)) {
-						fields.skip(Fields.SINT16);
-					}
-					if (fields.flag(RESISTANCE_LEVEL)) {
-						fields.skip(Fields.SINT16);
-					}
-					if (fields.flag(EXPANDED_ENERGY)) {
-						energy = fields.get(Fields.UINT16); // total
-						fields.skip(Fields.UINT16); // per hour
-						fields.skip(Fields.UINT8); // per minute
-					}
-					if (fields.flag(HEART_RATE)) {
-						int heartRate = fields.get(Fields.UINT8);
-						if (heartRate > 0) {
-							setPulse(heartRate);
-						}
-					}
-					if (fields.flag(METABOLIC_EQUIVALENT)) {
-						fields.skip(Fields.UINT8);
-					}
-					if (fields.flag(ELAPSED_TIME)) {
-						int elapsedTime = fields.get(Fields.UINT16);
-						if (resetting) {
-							duration = elapsedTime;
-						} else {
-							duration += durationDelta(elapsedTime);
-						}
-					}
-					if (fields.flag(REMAINING_TIME)) {
-						fields.get(Fields.UINT16);
-					}
-				} catch (Exception ex) {
-					// rarely flags and fields do not match up
-					trace.comment("field mismatch");
-				}
+			Measurement data = decoder.getMeasurement();
+			int present = decoder.getPresent();
+			decoder.clear();
+
+			int duration = getDuration();
+			int distance = getDistance();
+			int strokes = getStrokes();
+			int energy = getEnergy();
 
+			if ((present & Measurement.STROKE_RATE) != 0) {
+				setStrokeRate(data.getStrokeRate());
+			}
+			if ((present & Measurement.STROKES) != 0) {
+				strokes = data.getStrokes();
+			}
+			if ((present & Measurement.DISTANCE) != 0) {
+				distance = data.getDistance();
+			}
+			if ((present & Measurement.SPEED) != 0) {
+				setSpeed(data.getSpeed());
+			}
+			if ((present & Measurement.POWER) != 0) {
+				setPower(data.getPower());
+			}
+			if ((present & Measurement.ENERGY) != 0) {
+				energy = data.getEnergy();
+			}
+			if ((present & Measurement.PULSE) != 0 && data.getPulse() > 0) {
+				setPulse(data.getPulse());
+			}
+			if ((present & Measurement.DURATION) != 0) {
+				int elapsedTime = data.getDuration();
 				if (resetting) {
-					if (distance + duration + energy + strokes == 0) {
-						trace.comment("resetted");
-						resetting = false;
-					}
+					duration = elapsedTime;
 				} else {
-					setDistance(distance);
-					setDuration(duration);
-					setStrokes(strokes);
-					setEnergy(energy);
+					duration += durationDelta(elapsedTime);
+				}
+			}
+
+			if (resetting) {
+				if (distance + duration + energy + strokes == 0) {
+					trace.comment("resetted");
+					resetting = false;
 				}
-				notifyMeasurement();
+			} else {
+				setDistance(distance);
+				setDuration(duration);
+				setStrokes(strokes);
+				setEnergy(energy);
 			}
+			notifyMeasurement();
 		}
 
 		/**
@@ -738,7 +720,7 @@ public class BluetoothRower extends Rower {
 
 		int delta = elapsedTime - this.previousElapsedTime;
 		this.previousElapsedTime = elapsedTime;
-		trace.comment(String.format("elapsed time %+d = %d", delta, elapsedTime));
+		trace.comment("elapsed time %+d = %d", delta, elapsedTime);
 
 		if (delta < 0) {
 			// ignore error
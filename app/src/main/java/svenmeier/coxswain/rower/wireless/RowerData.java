@@ -0,0 +1,209 @@
+package svenmeier.coxswain.rower.wireless;
+
+import svenmeier.coxswain.gym.Measurement;
+
+/**
+ * Decoder of the FTMS Rower Data characteristic (0x2AD1), working on the raw value without any
+ * allocation.
+ * <p>
+ * Notifications with MORE_DATA set are merged until the final notification arrives.
+ */
+public class RowerData {
+
+	public static final int MORE_DATA = 0;
+	public static final int AVERAGE_STROKE_RATE = 1;
+	public static final int TOTAL_DISTANCE = 2;
+	public static final int INSTANTANEOUS_PACE = 3;
+	public static final int AVERAGE_PACE = 4;
+	public static final int INSTANTANEOUS_POWER = 5;
+	public static final int AVERAGE_POWER = 6;
+	public static final int RESISTANCE_LEVEL = 7;
+	public static final int EXPANDED_ENERGY = 8;
+	public static final int HEART_RATE = 9;
+	public static final int METABOLIC_EQUIVALENT = 10;
+	public static final int ELAPSED_TIME = 11;
+	public static final int REMAINING_TIME = 12;
+
+	private static final int FLAGS = 13;
+
+	/**
+	 * Size of the flags.
+	 */
+	private static final int FLAGS_SIZE = 2;
+
+	/**
+	 * Size of the fields for each flag - stroke rate and stroke count are present when MORE_DATA is
+	 * <em>not</em> set.
+	 */
+	private static final int[] SIZES = {
+			1 + 2, // stroke rate, stroke count
+			1,
+			3,
+			2,
+			2,
+			2,
+			2,
+			2,
+			2 + 2 + 1, // total, per hour, per minute
+			1,
+			1,
+			2,
+			2
+	};
+
+	/**
+	 * Offset of a field not present.
+	 */
+	private static final int ABSENT = -1;
+
+	/**
+	 * Flags of the cached offsets, one slot for notifications with and without MORE_DATA.
+	 */
+	private final int[] cachedFlags = {-1, -1};
+
+	private final int[][] cachedOffsets = new int[2][FLAGS + 1];
+
+	/**
+	 * The merged values.
+	 */
+	private final Measurement measurement = new Measurement();
+
+	/**
+	 * Mask of merged values.
+	 */
+	private int present;
+
+	private boolean mismatch;
+
+	/**
+	 * Decode a notification.
+	 *
+	 * @param value raw value of the characteristic
+	 * @return whether the merged values are complete, i.e. no more data follows
+	 */
+	public boolean decode(byte[] value) {
+		if (value.length < FLAGS_SIZE) {
+			mismatch = true;
+			return false;
+		}
+
+		int flags = uint16(value, 0) & ((1 << FLAGS) - 1);
+		int[] offsets = offsets(flags);
+
+		int offset;
+		if ((offset = offsets[MORE_DATA]) != ABSENT && offset + SIZES[MORE_DATA] <= value.length) {
+			measurement.setStrokeRate(uint8(value, offset) / 2);
+			measurement.setStrokes(uint16(value, offset + 1));
+			present |= Measurement.STROKE_RATE | Measurement.STROKES;
+		}
+		if ((offset = offsets[TOTAL_DISTANCE]) != ABSENT && offset + SIZES[TOTAL_DISTANCE] <= value.length) {
+			measurement.setDistance(uint16(value, offset) + (uint8(value, offset + 2) << 16));
+			present |= Measurement.DISTANCE;
+		}
+		if ((offset = offsets[INSTANTANEOUS_PACE]) != ABSENT && offset + SIZES[INSTANTANEOUS_PACE] <= value.length) {
+			int instantaneousPace = uint16(value, offset);
+			if (instantaneousPace == 0) {
+				measurement.setSpeed(0);
+			} else {
+				measurement.setSpeed(500 * 100 / instantaneousPace);
+			}
+			present |= Measurement.SPEED;
+		}
+		if ((offset = offsets[INSTANTANEOUS_POWER]) != ABSENT && offset + SIZES[INSTANTANEOUS_POWER] <= value.length) {
+			measurement.setPower(sint16(value, offset));
+			present |= Measurement.POWER;
+		}
+		if ((offset = offsets[EXPANDED_ENERGY]) != ABSENT && offset + SIZES[EXPANDED_ENERGY] <= value.length) {
+			measurement.setEnergy(uint16(value, offset));
+			present |= Measurement.ENERGY;
+		}
+		if ((offset = offsets[HEART_RATE]) != ABSENT && offset + SIZES[HEART_RATE] <= value.length) {
+			measurement.setPulse(uint8(value, offset));
+			present |= Measurement.PULSE;
+		}
+		if ((offset = offsets[ELAPSED_TIME]) != ABSENT && offset + SIZES[ELAPSED_TIME] <= value.length) {
+			measurement.setDuration(uint16(value, offset));
+			present |= Measurement.DURATION;
+		}
+
+		// rarely flags and fields do not match up
+		mismatch |= offsets[FLAGS] > value.length;
+
+		return (flags & (1 << MORE_DATA)) == 0;
+	}
+
+	/**
+	 * Get the merged values.
+	 *
+	 * @see #getPresent()
+	 */
+	public Measurement getMeasurement() {
+		return measurement;
+	}
+
+	/**
+	 * Get the mask of merged values.
+	 *
+	 * @see Measurement#DURATION
+	 */
+	public int getPresent() {
+		return present;
+	}
+
+	/**
+	 * Did any notification not match its flags since the last {@link #clear()}.
+	 */
+	public boolean isMismatch() {
+		return mismatch;
+	}
+
+	/**
+	 * Clear the merged values, to be called after they were applied.
+	 */
+	public void clear() {
+		present = 0;
+		mismatch = false;
+	}
+
+	/**
+	 * Get the offset of each field for the given flags, the last entry is the end of all fields.
+	 */
+	private int[] offsets(int flags) {
+		int slot = flags & (1 << MORE_DATA);
+		int[] offsets = cachedOffsets[slot];
+
+		if (cachedFlags[slot] != flags) {
+			int offset = FLAGS_SIZE;
+			for (int f = 0; f < FLAGS; f++) {
+				boolean set = (flags & (1 << f)) != 0;
+				if (f == MORE_DATA) {
+					set = !set;
+				}
+
+				if (set) {
+					offsets[f] = offset;
+					offset += SIZES[f];
+				} else {
+					offsets[f] = ABSENT;
+				}
+			}
+			offsets[FLAGS] = offset;
+
+			cachedFlags[slot] = flags;
+		}
+
+		return offsets;
+	}
+
+	private static int uint8(byte[] value, int offset) {
+		return value[offset] & 0xFF;
+	}
+
+	private static int uint16(byte[] value, int offset) {
+		return (value[offset] & 0xFF) | ((value[offset + 1] & 0xFF) << 8);
+	}
+
+	private static int sint16(byte[] value, int offset) {
+		return (short)uint16(value, offset);
+	}
+}
@@ -10,7 +10,7 @@ import android.widget.Toast;
 
 import svenmeier.coxswain.Heart;
 import svenmeier.coxswain.R;
-import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.rower.Rower;
 import svenmeier.coxswain.util.PermissionBlock;
 
 /**
@@ -22,8 +22,8 @@ public class SensorsHeart extends Heart {
 
 	private Connection connection;
 
-	public SensorsHeart(Context context, Measurement measurement, Callback callback) {
-		super(context, measurement, callback);
+	public SensorsHeart(Context context, Rower rower) {
+		super(context, rower);
 
 		connection = new Connection(context);
 		connection.open();
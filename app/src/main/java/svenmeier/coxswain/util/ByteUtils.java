@@ -2,14 +2,18 @@ package svenmeier.coxswain.util;
 
 public class ByteUtils {
     public static String toHex(byte[] buffer) {
-        StringBuilder string = new StringBuilder(buffer.length * 3);
+        return toHex(buffer, 0, buffer.length);
+    }
+
+    public static String toHex(byte[] buffer, int offset, int length) {
+        StringBuilder string = new StringBuilder(length * 3);
 
-        for (int c = 0; c < buffer.length; c++) {
+        for (int c = 0; c < length; c++) {
             if (c > 0) {
                 string.append(' ');
             }
 
-            int b = buffer[c] & 0xFF;
+            int b = buffer[offset + c] & 0xFF;
 
             string.append(hex[b >>> 4]);
             string.append(hex[b & 0x0F]);
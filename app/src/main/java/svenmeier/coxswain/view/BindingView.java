@@ -130,7 +130,16 @@ public class BindingView extends LinearLayout {
         changeValue(value, false);
     }
 
-    public void changed(Gym gym, PaceBoat paceBoat, Measurement measurement) {
+    /**
+     * @param changed mask of changed values, bindings not affected are not updated
+     */
+    public void changed(Gym.Frame frame, PaceBoat paceBoat, int changed) {
+        if ((changed & affectedBy()) == 0) {
+            return;
+        }
+
+        Measurement measurement = frame.measurement;
+
         int achieved = 0;
 
         int targetDuration = 0;
@@ -142,10 +151,10 @@ public class BindingView extends LinearLayout {
         int limitPower = 0;
         int limitPulse = 0;
 
-        if (gym.progress != null) {
-            achieved = gym.progress.achieved();
+        if (frame.progress != null) {
+            achieved = frame.achieved;
 
-            Segment segment = gym.progress.segment;
+            Segment segment = frame.progress.segment;
 
             targetDuration = segment.duration.get();
             targetDistance = segment.distance.get();
@@ -189,7 +198,7 @@ public class BindingView extends LinearLayout {
                 split(100f / measurement.getSpeed());
                 break;
             case AVERAGE_SPLIT:
-                split(measurement.getDuration() * 1f / measurement.getDistance());
+                split(measurement.getElapsed() / 1000f / measurement.getDistance());
                 break;
             case DELTA_DISTANCE:
                 delta(paceBoat.getDistanceDelta(measurement), false);
@@ -200,6 +209,35 @@ public class BindingView extends LinearLayout {
         }
     }
 
+    /**
+     * Values affecting the binding - segment targets are always included, because progress
+     * to the next segment changes targets and limits.
+     */
+    private int affectedBy() {
+        switch (binding) {
+            case SPEED:
+            case SPLIT:
+                return Measurement.SPEED | Measurement.TARGETS;
+            case PULSE:
+                return Measurement.PULSE | Measurement.TARGETS;
+            case STROKE_RATE:
+                return Measurement.STROKE_RATE | Measurement.TARGETS;
+            case POWER:
+                return Measurement.POWER | Measurement.TARGETS;
+            case STROKE_RATIO:
+                return Measurement.STROKE_RATIO | Measurement.TARGETS;
+            case AVERAGE_SPLIT:
+            case DELTA_DISTANCE:
+            case DELTA_DURATION:
+                return Measurement.ELAPSED | Measurement.TARGETS;
+            case TIME:
+            case NONE:
+                return 0;
+            default:
+                return Measurement.TARGETS;
+        }
+    }
+
     private void split(float inverseSpeed) {
         changeState(R.attr.binding_normal);
 
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package svenmeier.coxswain.view;
+
+import android.os.Bundle;
+import android.os.Handler;
+
+import androidx.preference.Preference;
+import androidx.preference.PreferenceFragmentCompat;
+import androidx.preference.PreferenceScreen;
+
+import java.util.List;
+
+import svenmeier.coxswain.R;
+import svenmeier.coxswain.metrics.Metrics;
+
+/**
+ * Show all {@link Metrics}, refreshed every second.
+ */
+public class DiagnosticsFragment extends PreferenceFragmentCompat {
+
+    private static final long REFRESH = 1000;
+
+    private static final String NONE = "none";
+
+    private final Handler handler = new Handler();
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+
+            handler.postDelayed(this, REFRESH);
+        }
+    };
+
+    @Override
+    public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
+        setPreferenceScreen(getPreferenceManager().createPreferenceScreen(getActivity()));
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+
+        handler.post(refresh);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+
+        handler.removeCallbacks(refresh);
+    }
+
+    private void refresh() {
+        PreferenceScreen screen = getPreferenceScreen();
+
+        List<String> names = Metrics.getNames();
+        if (names.isEmpty()) {
+            if (screen.getPreferenceCount() == 0) {
+                Preference preference = new Preference(getActivity());
+                preference.setKey(NONE);
+                preference.setTitle(getString(R.string.preference_diagnostics_none_title));
+                preference.setSummary(getString(R.string.preference_diagnostics_none_summary));
+
+                screen.addPreference(preference);
+            }
+            return;
+        }
+
+        Preference none = screen.findPreference(NONE);
+        if (none != null) {
+            screen.removePreference(none);
+        }
+
+        for (String name : names) {
+            Preference preference = screen.findPreference(name);
+            if (preference == null) {
+                preference = new Preference(getActivity());
+                preference.setKey(name);
+                preference.setTitle(name);
+                preference.setPersistent(false);
+
+                screen.addPreference(preference);
+            }
+
+            preference.setSummary(String.valueOf(Metrics.get(name)));
+        }
+    }
+}
@@ -19,6 +19,7 @@ import android.content.Context;
 import android.graphics.Paint;
 import android.graphics.Typeface;
 import android.os.Bundle;
+import android.os.Process;
 import android.text.format.DateUtils;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -43,35 +44,56 @@ import java.text.Format;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import propoid.ui.list.GenericRecyclerAdapter;
-import propoid.ui.list.MatchLookup;
 import propoid.util.content.Preference;
 import svenmeier.coxswain.Gym;
 import svenmeier.coxswain.R;
-import svenmeier.coxswain.gym.Workout;
+import svenmeier.coxswain.gym.Program;
+import svenmeier.coxswain.gym.Rollup;
 import svenmeier.coxswain.util.ChartUtils;
 
-public class PerformanceFragment extends Fragment implements Gym.Listener {
+public class PerformanceFragment extends Fragment implements Gym.SelectionListener, Gym.WorkoutListener {
 
     public static final int VALUE_TEXT_SIZE = 12;
 
     public static final int DESCRIPTION_TEXT_SIZE = 15;
 
-    private Gym gym;
+    /**
+     * Count of performances in each page.
+     */
+    private static final int PAGE = 32;
 
-    private Preference<TimeUnit> unitPreference;
+    /**
+     * Maximum count of cached pages.
+     */
+    private static final int PAGES = 8;
 
-    private Performance max = new Performance(-1);
+    /**
+     * Prefetch the following page, when a performance this close to its end is bound.
+     */
+    private static final int PREFETCH = PAGE / 4;
 
-    private List<Performance> pendings = new ArrayList<>();
+    private Gym gym;
 
-    private Map<Integer, Performance> performances = new HashMap<>();
+    private Preference<TimeUnit> unitPreference;
 
-    private PerformanceLookup lookup;
+    /**
+     * Cached pages, least recently used first.
+     */
+    private Map<Integer, Page> pages = new LinkedHashMap<Integer, Page>(PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+            return size() > PAGES;
+        }
+    };
+
+    /**
+     * Page currently looked up.
+     */
+    private Page lookup;
 
     private RecyclerView chartsView;
 
@@ -88,27 +110,55 @@ public class PerformanceFragment extends Fragment implements Gym.Listener {
         unitPreference = Preference.getEnum(context, TimeUnit.class, R.string.preference_performance_unit).fallback(TimeUnit.DAY);
         unit = unitPreference.get();
 
-        gym.addListener(this);
+        gym.selections.subscribe(this);
+        gym.workouts.subscribe(this);
 
         setHasOptionsMenu(true);
     }
 
     @Override
     public void onDetach() {
-        gym.removeListener(this);
+        gym.selections.unsubscribe(this);
+        gym.workouts.unsubscribe(this);
 
         super.onDetach();
     }
 
 
     @Override
-    public void changed(Object scope) {
-        if (scope == null) {
-            max.reset();
-            pendings.clear();
-            performances.clear();
-            adapter.notifyDataSetChanged();
+    public void programSelected(Program program) {
+        reload();
+    }
+
+    @Override
+    public void workoutPersisted(long id, long start) {
+        invalidate(start);
+    }
+
+    @Override
+    public void workoutDeleted(long id, long start) {
+        invalidate(start);
+    }
+
+    private void reload() {
+        pages.clear();
+        adapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Look up cached pages including the given time again, keeping their performances until then.
+     */
+    private void invalidate(long time) {
+        for (Page page : pages.values()) {
+            if (page.includes(time)) {
+                page.loaded = false;
+
+                // result of running lookup is outdated
+                page.invalidated = (page == lookup);
+            }
         }
+
+        checkPending();
     }
 
     @Override
@@ -130,7 +180,7 @@ public class PerformanceFragment extends Fragment implements Gym.Listener {
 
             unit.prepare(item);
 
-            changed(null);
+            reload();
         }
 
         return super.onOptionsItemSelected(item);
@@ -210,6 +260,7 @@ public class PerformanceFragment extends Fragment implements Gym.Listener {
         @Override
         protected void onBind() {
             Performance performance = getPerformance(getAdapterPosition());
+            Performance max = performance.page.max;
 
             BarDataSet dataSet = createDataSet(R.string.performance, 0);
             dataSet.addEntry(new BarEntry(0, relative(performance.duration, max.duration), formatSeconds(performance.duration)));
@@ -229,8 +280,8 @@ public class PerformanceFragment extends Fragment implements Gym.Listener {
             data.setValueTextColor(getColor(R.color.chart_value));
             chartView.setData(data);
 
-            long from = unit.getFrom(performance);
-            long to = unit.getTo(performance);
+            long from = unit.getFrom(performance.time);
+            long to = unit.getTo(performance.time);
             String description = DateUtils.formatDateRange(getActivity(), from, to, DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_ABBREV_ALL);
             chartView.getDescription().setText(description);
         }
@@ -276,86 +327,177 @@ public class PerformanceFragment extends Fragment implements Gym.Listener {
     }
 
     private Performance getPerformance(int time) {
-        Performance performance = this.performances.get(time);
-        if (performance == null) {
-            performance = new Performance(time);
-
-            performances.put(time, performance);
-            pendings.add(performance);
+        int index = time % PAGE;
+        if (index >= PAGE - PREFETCH) {
+            getPage(time / PAGE + 1);
         }
 
+        // used last, so it is looked up first
+        Page page = getPage(time / PAGE);
+
         checkPending();
 
-        return performance;
+        return page.performances[index];
+    }
+
+    private Page getPage(int index) {
+        Page page = pages.get(index);
+        if (page == null) {
+            page = new Page(index);
+
+            pages.put(index, page);
+        }
+        return page;
     }
 
+    /**
+     * Look up the most recently used page that is not loaded yet.
+     */
     private void checkPending() {
-        if (pendings.isEmpty() == false && lookup == null) {
-            Performance performance = pendings.get(pendings.size() - 1);
+        if (lookup != null) {
+            return;
+        }
 
-            lookup = new PerformanceLookup(performance, unit.getFrom(performance), unit.getTo(performance));
-            lookup.restartLoader(0, this);
+        Page pending = null;
+        for (Page page : pages.values()) {
+            if (page.loaded == false) {
+                pending = page;
+            }
         }
 
+        if (pending != null) {
+            lookup = pending;
+
+            new Thread(new PageLookup(pending, unit)).start();
+        }
+    }
+
+    private void onLookup(Page page, Rollup[] aggregates) {
+        lookup = null;
+
+        if (isAdded() == false) {
+            return;
+        }
+
+        if (pages.get(page.index) == page) {
+            page.max.clear();
+
+            // buckets are ascending in time
+            for (int p = 0; p < PAGE; p++) {
+                Performance performance = page.performances[p];
+                Rollup aggregate = aggregates[PAGE - 1 - p];
+
+                performance.distance = aggregate.distance.get();
+                performance.strokes = aggregate.strokes.get();
+                performance.energy = aggregate.energy.get();
+                performance.duration = aggregate.duration.get();
+
+                page.max.distance = Math.max(page.max.distance, performance.distance);
+                page.max.strokes = Math.max(page.max.strokes, performance.strokes);
+                page.max.energy = Math.max(page.max.energy, performance.energy);
+                page.max.duration = Math.max(page.max.duration, performance.duration);
+            }
+            page.loaded = page.invalidated == false;
+            page.invalidated = false;
+
+            adapter.notifyItemRangeChanged(page.index * PAGE, PAGE);
+        }
+
+        checkPending();
+    }
+
+    /**
+     * Consecutive performances, with their maximum.
+     */
+    private class Page {
+
+        final int index;
+
+        final Performance[] performances = new Performance[PAGE];
+
+        final Performance max;
+
+        boolean loaded;
+
+        /**
+         * Invalidated while looked up.
+         */
+        boolean invalidated;
+
+        Page(int index) {
+            this.index = index;
+
+            for (int p = 0; p < PAGE; p++) {
+                performances[p] = new Performance(this, index * PAGE + p);
+            }
+
+            max = new Performance(this, -1);
+        }
+
+        /**
+         * Does this page include the given time.
+         */
+        boolean includes(long time) {
+            return unit.getFrom(index * PAGE + PAGE - 1) <= time && time < unit.getTo(index * PAGE);
+        }
     }
 
     private class Performance {
 
-        int time;
+        final Page page;
+
+        final int time;
 
         public int duration;
         public int distance;
         public int strokes;
         public int energy;
 
-        public Performance(int time) {
+        public Performance(Page page, int time) {
+            this.page = page;
             this.time = time;
         }
 
-        public void reset() {
+        void clear() {
+            duration = 0;
             distance = 0;
             strokes = 0;
             energy = 0;
-            duration = 0;
         }
     }
 
-    private class PerformanceLookup extends MatchLookup<Workout> {
+    /**
+     * Aggregates all performances of a page in the background.
+     */
+    private class PageLookup implements Runnable {
 
-        private final Performance pending;
+        private final Page page;
 
-        public PerformanceLookup(Performance pending, long from, long to) {
-            super(gym.getWorkouts(from, to));
+        private final long[] boundaries = new long[PAGE + 1];
 
-            this.pending = pending;
-        }
+        public PageLookup(Page page, TimeUnit unit) {
+            this.page = page;
 
-        @Override
-        protected void onLookup(List<Workout> workouts) {
-
-            // reset in case the lookup is done twice
-            pending.reset();
-            for (Workout workout : workouts) {
-                pending.distance += workout.distance.get();
-                pending.strokes += workout.strokes.get();
-                pending.energy += workout.energy.get();
-                pending.duration += workout.duration.get();
+            // oldest first
+            int first = page.index * PAGE;
+            for (int b = 0; b < PAGE; b++) {
+                boundaries[b] = unit.getFrom(first + PAGE - 1 - b);
             }
-            max.distance = Math.max(max.distance, pending.distance);
-            max.strokes = Math.max(max.strokes, pending.strokes);
-            max.energy = Math.max(max.energy, pending.energy);
-            max.duration = Math.max(max.duration, pending.duration);
+            boundaries[PAGE] = unit.getTo(first);
+        }
 
-            // no longer pending
-            pendings.remove(pending);
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
 
-            adapter.notifyDataSetChanged();
+            final Rollup[] aggregates = gym.aggregate(boundaries);
 
-            // recover cursor
-            workouts.clear();
-            
-            lookup = null;
-            checkPending();
+            chartsView.post(new Runnable() {
+                @Override
+                public void run() {
+                    onLookup(page, aggregates);
+                }
+            });
         }
     }
 
@@ -369,18 +511,18 @@ public class PerformanceFragment extends Fragment implements Gym.Listener {
             }
 
             @Override
-            public long getFrom(Performance performance) {
+            public long getFrom(int time) {
 
                 Calendar calendar = calendar();
-                calendar.add(Calendar.DATE, -performance.time);
+                calendar.add(Calendar.DATE, -time);
                 return calendar.getTimeInMillis();
             }
 
             @Override
-            public long getTo(Performance performance) {
+            public long getTo(int time) {
 
                 Calendar calendar = calendar();
-                calendar.add(Calendar.DATE, -performance.time + 1);
+                calendar.add(Calendar.DATE, -time + 1);
                 return calendar.getTimeInMillis();
             }
 
@@ -399,20 +541,20 @@ public class PerformanceFragment extends Fragment implements Gym.Listener {
             }
 
             @Override
-            public long getFrom(Performance performance) {
+            public long getFrom(int time) {
                 Calendar calendar = calendar();
 
                 calendar.set(Calendar.DAY_OF_WEEK, calendar.getFirstDayOfWeek());
-                calendar.add(Calendar.WEEK_OF_YEAR, -performance.time);
+                calendar.add(Calendar.WEEK_OF_YEAR, -time);
                 return calendar.getTimeInMillis();
             }
 
             @Override
-            public long getTo(Performance performance) {
+            public long getTo(int time) {
                 Calendar calendar = calendar();
 
                 calendar.set(Calendar.DAY_OF_WEEK, calendar.getFirstDayOfWeek());
-                calendar.add(Calendar.WEEK_OF_YEAR, -performance.time + 1);
+                calendar.add(Calendar.WEEK_OF_YEAR, -time + 1);
                 return calendar.getTimeInMillis();
             }
 
@@ -431,20 +573,20 @@ public class PerformanceFragment extends Fragment implements Gym.Listener {
             }
 
             @Override
-            public long getFrom(Performance performance) {
+            public long getFrom(int time) {
                 Calendar calendar = calendar();
 
                 calendar.set(Calendar.DAY_OF_MONTH, 1);
-                calendar.add(Calendar.MONTH, -performance.time);
+                calendar.add(Calendar.MONTH, -time);
                 return calendar.getTimeInMillis();
             }
 
             @Override
-            public long getTo(Performance performance) {
+            public long getTo(int time) {
                 Calendar calendar = calendar();
 
                 calendar.set(Calendar.DAY_OF_MONTH, 1);
-                calendar.add(Calendar.MONTH, -performance.time + 1);
+                calendar.add(Calendar.MONTH, -time + 1);
                 return calendar.getTimeInMillis();
             }
 
@@ -467,9 +609,9 @@ public class PerformanceFragment extends Fragment implements Gym.Listener {
 
         public abstract void prepare(MenuItem item);
 
-        public abstract long getFrom(Performance performance);
+        public abstract long getFrom(int time);
 
-        public abstract long getTo(Performance performance);
+        public abstract long getTo(int time);
 
         public abstract TimeUnit next();
     }
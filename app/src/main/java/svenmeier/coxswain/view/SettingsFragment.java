@@ -121,6 +121,18 @@ public class SettingsFragment extends PreferenceFragmentCompat {
                 return true;
             }
         });
+
+        Preference diagnostics = findPreference(getString(R.string.preference_diagnostics));
+        diagnostics.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(Preference preference) {
+                FragmentTransaction transaction = getFragmentManager().beginTransaction();
+                transaction.replace(R.id.settings_fragment, new DiagnosticsFragment());
+                transaction.addToBackStack(null);
+                transaction.commit();
+                return true;
+            }
+        });
     }
 
     public static final String LOG_FILE = "coxswain.log";
@@ -37,14 +37,21 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.snackbar.Snackbar;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import propoid.core.Property;
+import propoid.db.LookupException;
 import propoid.db.Order;
+import propoid.db.Reference;
+import propoid.db.aspect.Row;
 import propoid.ui.list.GenericRecyclerAdapter;
 import propoid.ui.list.MatchRecyclerAdapter;
 import svenmeier.coxswain.Gym;
 import svenmeier.coxswain.R;
 import svenmeier.coxswain.SnapshotsActivity;
 import svenmeier.coxswain.WorkoutActivity;
+import svenmeier.coxswain.gym.Program;
 import svenmeier.coxswain.gym.Workout;
 import svenmeier.coxswain.rower.Distance;
 import svenmeier.coxswain.rower.Energy;
@@ -52,10 +59,16 @@ import svenmeier.coxswain.rower.Energy;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 
-public class WorkoutsFragment extends Fragment implements Gym.Listener {
+public class WorkoutsFragment extends Fragment implements Gym.SelectionListener, Gym.WorkoutListener {
 
     private Gym gym;
 
+    /**
+     * Id of the program the workouts are filtered by, {@link Row#TRANSIENT} for a transient
+     * program, or {@code null} for all workouts.
+     */
+    private Long filter;
+
     private RecyclerView workoutsView;
 
     private WorkoutsAdapter adapter;
@@ -68,14 +81,18 @@ public class WorkoutsFragment extends Fragment implements Gym.Listener {
 
         gym = Gym.instance(context);
 
-        gym.addListener(this);
+        gym.selections.subscribe(this);
+        gym.workouts.subscribe(this);
+
+        filter = filter(gym.program);
 
         setHasOptionsMenu(true);
     }
 
     @Override
     public void onDetach() {
-        gym.removeListener(this);
+        gym.workouts.unsubscribe(this);
+        gym.selections.unsubscribe(this);
 
         super.onDetach();
     }
@@ -132,20 +149,61 @@ public class WorkoutsFragment extends Fragment implements Gym.Listener {
     }
 
     @Override
-    public void changed(Object scope) {
-        if (scope == null) {
-            if (adapter != null) {
-                adapter.destroy(0, this);
-            }
+    public void programSelected(Program program) {
+        Long filter = filter(program);
+        if (filter == null ? this.filter == null : filter.equals(this.filter)) {
+            // repeated or challenged with the same program
+            return;
+        }
+        this.filter = filter;
+
+        if (adapter != null) {
+            adapter.destroy(0, this);
+        }
+
+        // must reset adapter to take into account current program
+        workoutsView.setAdapter(adapter = new WorkoutsAdapter());
+        adapter.initLoader(0, this);
+    }
 
-            // must reset adapter to take into account current program
-            workoutsView.setAdapter(adapter = new WorkoutsAdapter());
-            adapter.initLoader(0, this);
+    @Override
+    public void workoutPersisted(long id, long start) {
+        if (adapter == null) {
+            return;
+        }
+
+        int position = adapter.positionOf(id);
+        if (position == -1 || sort != 0) {
+            // new workout must be sorted in, or its totals might move it
+            adapter.restartLoader(0, this);
+        } else {
+            // start does not change
+            adapter.refresh(position);
         }
     }
 
+    @Override
+    public void workoutDeleted(long id, long start) {
+        if (adapter == null) {
+            return;
+        }
+
+        if (adapter.positionOf(id) != -1) {
+            adapter.restartLoader(0, this);
+        }
+    }
+
+    private static Long filter(Program program) {
+        return program == null ? null : Row.getID(program);
+    }
+
     private class WorkoutsAdapter extends MatchRecyclerAdapter<Workout> {
 
+        /**
+         * Workouts looked up again after they were persisted, by id.
+         */
+        private final Map<Long, Workout> refreshed = new HashMap<>();
+
         public WorkoutsAdapter() {
             super(R.layout.layout_workouts_item, Gym.instance(getActivity()).getWorkouts());
 
@@ -183,6 +241,48 @@ public class WorkoutsFragment extends Fragment implements Gym.Listener {
             return text;
         }
 
+        /**
+         * Get the position of a workout.
+         *
+         * @return position or {@code -1}
+         */
+        public int positionOf(long id) {
+            for (int position = 0; position < getItemCount(); position++) {
+                if (Row.getID(super.getItem(position)) == id) {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Look up the workout at the given position again and rebind its row only.
+         */
+        public void refresh(int position) {
+            Workout workout;
+            try {
+                workout = gym.get(new Reference<>(super.getItem(position)));
+            } catch (LookupException workoutAlreadyDeleted) {
+                restartLoader(0, WorkoutsFragment.this);
+                return;
+            }
+
+            refreshed.put(Row.getID(workout), workout);
+
+            notifyItemChanged(position);
+        }
+
+        @Override
+        protected Workout getItem(int position) {
+            Workout workout = super.getItem(position);
+
+            Workout fresh = refreshed.get(Row.getID(workout));
+            if (fresh != null) {
+                workout = fresh;
+            }
+            return workout;
+        }
+
         @Override
         protected GenericHolder createHolder(View v) {
             return new WorkoutHolder(v);
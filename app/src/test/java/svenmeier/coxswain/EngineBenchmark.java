@@ -0,0 +1,146 @@
+package svenmeier.coxswain;
+
+import android.os.Handler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import svenmeier.coxswain.gym.Difficulty;
+import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.gym.Program;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Main thread time per measurement, processed on the main thread as before and processed by the
+ * {@link Engine}, opt-in with {@code ./gradlew test -Pcoxswain-benchmark}.
+ *
+ * @see EngineTest
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = svenmeier.coxswain.BuildConfig.class)
+public class EngineBenchmark {
+
+	private static final int MEASUREMENTS = 5000;
+
+	private Gym gym;
+
+	private Program program;
+
+	private Gym.Frame last;
+
+	private int frames;
+
+	@Before
+	public void setUp() {
+		assumeTrue(Boolean.getBoolean("coxswain.benchmark"));
+
+		gym = Gym.instance(RuntimeEnvironment.application);
+
+		program = Program.meters("benchmark", 100000, Difficulty.EASY);
+		gym.mergeProgram(program);
+
+		gym.measurements.subscribe(new Gym.MeasurementListener() {
+			@Override
+			public void measured(Gym.Frame frame) {
+				last = frame;
+				frames++;
+			}
+		});
+	}
+
+	@Test
+	public void mainThreadPerMeasurement() throws InterruptedException {
+		gym.select(program);
+		frames = 0;
+		long before = onMain();
+		assertEquals(MEASUREMENTS / 5, last.measurement.getDistance());
+		report("main", before, frames);
+
+		gym.select(program);
+		frames = 0;
+		long after = onEngine();
+		assertEquals(MEASUREMENTS / 5, last.measurement.getDistance());
+		assertTrue(frames <= MEASUREMENTS);
+		report("engine", after, frames);
+
+		gym.deselect();
+	}
+
+	/**
+	 * Process all measurements on the main thread.
+	 */
+	private long onMain() {
+		Measurement measurement = new Measurement();
+
+		long start = System.nanoTime();
+		for (int m = 1; m <= MEASUREMENTS; m++) {
+			gym.onMeasured(measure(measurement, m), Measurement.ALL);
+
+			ShadowLooper.runUiThreadTasks();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Process all measurements on the engine, the main thread delivers frames only.
+	 */
+	private long onEngine() throws InterruptedException {
+		Handler engine = Engine.getHandler();
+
+		final Measurement measurement = new Measurement();
+		for (int m = 1; m <= MEASUREMENTS; m++) {
+			final int value = m;
+			engine.post(new Runnable() {
+				@Override
+				public void run() {
+					gym.onMeasured(measure(measurement, value), Measurement.ALL);
+				}
+			});
+		}
+
+		final CountDownLatch processed = new CountDownLatch(1);
+		engine.post(new Runnable() {
+			@Override
+			public void run() {
+				processed.countDown();
+			}
+		});
+
+		long nanos = 0;
+		boolean done;
+		do {
+			done = processed.await(1, TimeUnit.MILLISECONDS);
+
+			long start = System.nanoTime();
+			ShadowLooper.runUiThreadTasks();
+			nanos += System.nanoTime() - start;
+		} while (done == false);
+
+		return nanos;
+	}
+
+	private Measurement measure(Measurement measurement, int m) {
+		measurement.setDuration(m / 10);
+		measurement.setDistance(m / 5);
+		measurement.setStrokes(m / 25);
+		measurement.setEnergy(m / 100);
+		measurement.setSpeed(400);
+		measurement.setStrokeRate(26);
+		return measurement;
+	}
+
+	private void report(String name, long nanos, int frames) {
+		System.out.println(String.format("%s: %d measurements in %d frames, %.1f us main thread per measurement", name, MEASUREMENTS, frames, nanos / 1000d / MEASUREMENTS));
+	}
+}
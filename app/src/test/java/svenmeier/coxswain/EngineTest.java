@@ -0,0 +1,119 @@
+package svenmeier.coxswain;
+
+import android.os.Handler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import svenmeier.coxswain.gym.Difficulty;
+import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.gym.Program;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measurements processed by the {@link Engine}, delivered as {@link Gym.Frame}s on the main
+ * thread.
+ *
+ * @see EngineBenchmark
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = svenmeier.coxswain.BuildConfig.class)
+public class EngineTest {
+
+	private static final int MEASUREMENTS = 5000;
+
+	private Gym gym;
+
+	private Program program;
+
+	private Gym.Frame last;
+
+	private int frames;
+
+	@Before
+	public void setUp() {
+		gym = Gym.instance(RuntimeEnvironment.application);
+
+		program = Program.meters("engine", 100000, Difficulty.EASY);
+		gym.mergeProgram(program);
+
+		gym.measurements.subscribe(new Gym.MeasurementListener() {
+			@Override
+			public void measured(Gym.Frame frame) {
+				last = frame;
+				frames++;
+			}
+		});
+	}
+
+	@Test
+	public void conflation() throws InterruptedException {
+		gym.select(program);
+		frames = 0;
+
+		Measurement onMain = new Measurement();
+		for (int m = 1; m <= MEASUREMENTS; m++) {
+			gym.onMeasured(measure(onMain, m), Measurement.ALL);
+
+			ShadowLooper.runUiThreadTasks();
+		}
+
+		// main thread keeps up
+		assertEquals(MEASUREMENTS, frames);
+		assertEquals(MEASUREMENTS / 5, last.measurement.getDistance());
+
+		gym.select(program);
+		frames = 0;
+
+		Handler engine = Engine.getHandler();
+
+		final Measurement onEngine = new Measurement();
+		for (int m = 1; m <= MEASUREMENTS; m++) {
+			final int value = m;
+			engine.post(new Runnable() {
+				@Override
+				public void run() {
+					gym.onMeasured(measure(onEngine, value), Measurement.ALL);
+				}
+			});
+		}
+
+		final CountDownLatch processed = new CountDownLatch(1);
+		engine.post(new Runnable() {
+			@Override
+			public void run() {
+				processed.countDown();
+			}
+		});
+		assertTrue(processed.await(10, TimeUnit.SECONDS));
+
+		// main thread was held back
+		ShadowLooper.runUiThreadTasks();
+
+		assertEquals(1, frames);
+		assertEquals(MEASUREMENTS / 5, last.measurement.getDistance());
+		assertEquals(Event.PROGRAM_START, last.event);
+
+		gym.deselect();
+	}
+
+	private Measurement measure(Measurement measurement, int m) {
+		measurement.setDuration(m / 10);
+		measurement.setDistance(m / 5);
+		measurement.setStrokes(m / 25);
+		measurement.setEnergy(m / 100);
+		measurement.setSpeed(400);
+		measurement.setStrokeRate(26);
+		return measurement;
+	}
+}
@@ -0,0 +1,159 @@
+package svenmeier.coxswain;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for {@link GymIndices}, failing if a query falls back to a full table scan.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = svenmeier.coxswain.BuildConfig.class)
+public class GymIndicesTest {
+
+	private static final int WORKOUTS = 20000;
+
+	private static final long DAY = 24 * 60 * 60 * 1000;
+
+	private SQLiteDatabase database;
+
+	@Before
+	public void setUp() {
+		database = SQLiteDatabase.create(null);
+
+		database.execSQL("CREATE TABLE Program (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT)");
+		database.execSQL("CREATE TABLE Workout (_id INTEGER PRIMARY KEY AUTOINCREMENT, program INTEGER, programName TEXT, start INTEGER, evaluate INTEGER, duration INTEGER, distance INTEGER, strokes INTEGER, energy INTEGER)");
+		database.execSQL("CREATE TABLE Snapshot (_id INTEGER PRIMARY KEY AUTOINCREMENT, workout INTEGER, distance INTEGER, strokes INTEGER, energy INTEGER, speed INTEGER, pulse INTEGER, strokeRate INTEGER, strokeRatio INTEGER, power INTEGER)");
+		database.execSQL("CREATE TABLE Track (_id INTEGER PRIMARY KEY AUTOINCREMENT, workout INTEGER, count INTEGER, resolution INTEGER, columns BLOB, minimum BLOB, maximum BLOB)");
+		database.execSQL("CREATE TABLE Rollup (_id INTEGER PRIMARY KEY AUTOINCREMENT, day INTEGER, overall INTEGER, program INTEGER, count INTEGER, duration INTEGER, distance INTEGER, strokes INTEGER, energy INTEGER)");
+		database.execSQL("CREATE TABLE StrokeRecords (_id INTEGER PRIMARY KEY AUTOINCREMENT, workout INTEGER, first INTEGER, count INTEGER, strokes BLOB)");
+
+		Random random = new Random(42);
+
+		database.beginTransaction();
+		try {
+			for (int w = 0; w < WORKOUTS; w++) {
+				ContentValues workout = new ContentValues();
+				workout.put("program", random.nextInt(20));
+				workout.put("start", 1500000000000l + w * DAY / 2);
+				workout.put("evaluate", random.nextInt(10) > 0 ? 1 : 0);
+				workout.put("duration", random.nextInt(3600));
+				workout.put("distance", random.nextInt(10000));
+				workout.put("energy", random.nextInt(800));
+				long id = database.insert("Workout", null, workout);
+
+				ContentValues track = new ContentValues();
+				track.put("workout", id);
+				track.put("count", 0);
+				database.insert("Track", null, track);
+
+				ContentValues rollup = new ContentValues();
+				rollup.put("day", workout.getAsLong("start"));
+				rollup.put("overall", w % 2);
+				rollup.put("program", w % 2 == 0 ? workout.getAsInteger("program") : null);
+				database.insert("Rollup", null, rollup);
+			}
+
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
+		}
+
+		assertEquals(0, GymIndices.create(database));
+
+		database.execSQL("ANALYZE");
+	}
+
+	@After
+	public void tearDown() {
+		database.close();
+	}
+
+	@Test
+	public void complete() {
+		assertTrue(GymIndices.complete(database));
+
+		// existing indices are kept
+		assertEquals(0, GymIndices.create(database));
+	}
+
+	@Test
+	public void skipMissing() {
+		SQLiteDatabase empty = SQLiteDatabase.create(null);
+		try {
+			assertEquals(GymIndices.INDICES.size(), GymIndices.create(empty));
+			assertFalse(GymIndices.complete(empty));
+		} finally {
+			empty.close();
+		}
+	}
+
+	@Test
+	public void workoutsInRange() {
+		assertIndexed("SELECT * FROM Workout WHERE evaluate = 1 AND start >= 1500000000000 AND start < 1510000000000");
+		assertIndexed("SELECT * FROM Workout WHERE program = 3 AND evaluate = 1 AND start >= 1500000000000 AND start < 1510000000000");
+	}
+
+	@Test
+	public void workoutsSorted() {
+		for (String column : new String[]{"start", "duration", "distance", "energy"}) {
+			for (String direction : new String[]{"ASC", "DESC"}) {
+				assertIndexed("SELECT * FROM Workout ORDER BY " + column + " " + direction);
+				assertIndexed("SELECT * FROM Workout WHERE program = 3 ORDER BY " + column + " " + direction);
+			}
+		}
+	}
+
+	@Test
+	public void rollups() {
+		assertIndexed("SELECT * FROM Rollup WHERE overall = 1 AND day >= 1500000000000 AND day < 1510000000000");
+		assertIndexed("SELECT * FROM Rollup WHERE program = 3 AND day >= 1500000000000 AND day < 1510000000000");
+	}
+
+	@Test
+	public void details() {
+		assertIndexed("SELECT * FROM Snapshot WHERE workout = 3");
+		assertIndexed("SELECT * FROM Track WHERE workout = 3");
+		assertIndexed("SELECT * FROM StrokeRecords WHERE workout = 3 ORDER BY first");
+	}
+
+	private void assertIndexed(String query) {
+		StringBuilder plan = new StringBuilder();
+
+		boolean scan = false;
+
+		Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + query, new String[0]);
+		try {
+			int detail = cursor.getColumnIndex("detail");
+			while (cursor.moveToNext()) {
+				String step = cursor.getString(detail);
+				plan.append(step).append('\n');
+
+				if (step.matches("SCAN (TABLE )?\\w+( AS \\w+)?") && step.contains("USING") == false) {
+					scan = true;
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+
+		assertFalse("full table scan " + query + "\n" + plan, scan);
+
+		if (query.contains("ORDER BY")) {
+			assertFalse("temporary sort " + query + "\n" + plan, plan.toString().contains("TEMP B-TREE"));
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package svenmeier.coxswain;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import svenmeier.coxswain.gym.Measurement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for {@link SnapshotJournal}.
+ */
+public class SnapshotJournalTest {
+
+	@Test
+	public void replay() throws Exception {
+		File file = File.createTempFile("snapshots", ".journal");
+		file.delete();
+
+		SnapshotJournal journal = new SnapshotJournal(file);
+		for (int s = 1; s <= 3; s++) {
+			journal.append(1000L, measurement(s));
+		}
+		journal.committed(1);
+		// committing up to the same sequence again drops nothing
+		journal.committed(1);
+		// killed without close
+		assertEquals(2, journal.pending());
+
+		journal = new SnapshotJournal(file);
+		List<SnapshotJournal.Record> records = journal.pendingRecords();
+		assertEquals(2, records.size());
+		assertEquals(1, records.get(0).sequence);
+		assertEquals(1000L, records.get(0).workout);
+		assertEquals(2, records.get(0).measurement.getDuration());
+		assertEquals(20, records.get(0).measurement.getDistance());
+		assertEquals(3, records.get(1).measurement.getDuration());
+		assertEquals(30, records.get(1).measurement.getStrokes());
+		assertEquals(3, records.get(1).measurement.getPower());
+
+		journal.committed(records.get(1).sequence + 1);
+		assertEquals(0, journal.pending());
+		journal.close();
+
+		// truncated, stale records are not replayed
+		journal = new SnapshotJournal(file);
+		assertEquals(0, journal.pending());
+		journal.append(2000L, measurement(4));
+		journal.close();
+
+		journal = new SnapshotJournal(file);
+		records = journal.pendingRecords();
+		assertEquals(1, records.size());
+		assertEquals(2000L, records.get(0).workout);
+		journal.close();
+
+		file.delete();
+	}
+
+	@Test
+	public void replayCommitted() throws Exception {
+		File file = File.createTempFile("snapshots", ".journal");
+		file.delete();
+
+		SnapshotJournal journal = new SnapshotJournal(file);
+		for (int s = 1; s <= 3; s++) {
+			journal.append(1000L, measurement(s));
+		}
+		// killed after the first two were committed, but before the journal was told so
+
+		journal = new SnapshotJournal(file);
+		List<SnapshotJournal.Record> records = journal.pendingRecords();
+		assertEquals(3, records.size());
+
+		// persisted duration of the workout
+		int duration = 2;
+		assertTrue(records.get(0).isCommitted(duration));
+		assertTrue(records.get(1).isCommitted(duration));
+		assertFalse(records.get(2).isCommitted(duration));
+		journal.close();
+
+		file.delete();
+	}
+
+	@Test
+	public void grow() throws Exception {
+		File file = File.createTempFile("snapshots", ".journal");
+		file.delete();
+
+		SnapshotJournal journal = new SnapshotJournal(file);
+		for (int s = 0; s < 5000; s++) {
+			journal.append(1000L, measurement(s));
+		}
+		journal.close();
+
+		journal = new SnapshotJournal(file);
+		List<SnapshotJournal.Record> records = journal.pendingRecords();
+		assertEquals(5000, records.size());
+		assertEquals(4999, records.get(4999).measurement.getDuration());
+		journal.close();
+
+		file.delete();
+	}
+
+	private Measurement measurement(int seconds) {
+		Measurement measurement = new Measurement();
+		measurement.setDuration(seconds);
+		measurement.setDistance(seconds * 10);
+		measurement.setStrokes(seconds * 10);
+		measurement.setPower(seconds);
+		return measurement;
+	}
+}
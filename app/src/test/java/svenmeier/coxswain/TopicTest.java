@@ -0,0 +1,54 @@
+package svenmeier.coxswain;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test for {@link Topic}.
+ */
+public class TopicTest {
+
+	@Test
+	public void subscribe() {
+		Topic<String> topic = new Topic<>();
+
+		topic.subscribe("a");
+		topic.subscribe("b");
+		topic.subscribe("a");
+
+		assertEquals("[a, b]", list(topic).toString());
+
+		topic.unsubscribe("a");
+
+		assertEquals("[b]", list(topic).toString());
+	}
+
+	@Test
+	public void unsubscribeWhileNotified() {
+		Topic<String> topic = new Topic<>();
+		topic.subscribe("a");
+		topic.subscribe("b");
+
+		List<String> notified = new ArrayList<>();
+		for (String listener : topic) {
+			topic.unsubscribe("b");
+
+			notified.add(listener);
+		}
+
+		assertEquals("[a, b]", notified.toString());
+		assertEquals("[a]", list(topic).toString());
+	}
+
+	private List<String> list(Topic<String> topic) {
+		List<String> list = new ArrayList<>();
+		for (String listener : topic) {
+			list.add(listener);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,57 @@
+package svenmeier.coxswain.gym;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test for {@link Measurement}.
+ */
+public class MeasurementTest {
+
+	@Test
+	public void changed() {
+		Measurement measurement = new Measurement();
+		assertEquals(0, measurement.clearChanged());
+
+		measurement.setDuration(1);
+		measurement.setDistance(2);
+		measurement.setPulse(0);
+		assertEquals(Measurement.DURATION | Measurement.ELAPSED | Measurement.DISTANCE, measurement.clearChanged());
+		assertEquals(0, measurement.clearChanged());
+
+		measurement.setDuration(1);
+		measurement.setStrokeRatio(3);
+		assertEquals(Measurement.STROKE_RATIO, measurement.clearChanged());
+
+		measurement.reset();
+		assertEquals(Measurement.ALL, measurement.clearChanged());
+
+		assertEquals(0, new Measurement(measurement).clearChanged());
+	}
+
+	@Test
+	public void elapsed() {
+		Measurement measurement = new Measurement();
+
+		measurement.setElapsed(1500, 0);
+		assertEquals(1, measurement.getDuration());
+		assertEquals(Measurement.DURATION | Measurement.ELAPSED, measurement.clearChanged());
+
+		// within same second
+		measurement.setDuration(1);
+		assertEquals(1500, measurement.getElapsed());
+		assertEquals(0, measurement.clearChanged());
+
+		measurement.setDuration(2);
+		assertEquals(2000, measurement.getElapsed());
+		assertEquals(Measurement.DURATION | Measurement.ELAPSED, measurement.clearChanged());
+
+		measurement.setElapsed(2500, 1000000000L);
+		assertEquals(2500, measurement.getElapsed(1200000000L));
+
+		measurement.setSpeed(300);
+		assertEquals(2700, measurement.getElapsed(1200000000L));
+		assertEquals(3500, measurement.getElapsed(5000000000L));
+	}
+}
@@ -0,0 +1,73 @@
+package svenmeier.coxswain.gym;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test for {@link Rollup}.
+ */
+public class RollupTest {
+
+	@Test
+	public void day() {
+		Calendar calendar = Calendar.getInstance();
+		calendar.set(2020, Calendar.MARCH, 14, 18, 30, 15);
+
+		long day = Rollup.day(calendar.getTimeInMillis());
+		calendar.setTimeInMillis(day);
+		assertEquals(14, calendar.get(Calendar.DAY_OF_MONTH));
+		assertEquals(0, calendar.get(Calendar.HOUR_OF_DAY));
+		assertEquals(0, calendar.get(Calendar.MINUTE));
+		assertEquals(0, calendar.get(Calendar.MILLISECOND));
+
+		assertEquals(day, Rollup.day(day));
+
+		long next = Rollup.nextDay(day);
+		calendar.setTimeInMillis(next);
+		assertEquals(15, calendar.get(Calendar.DAY_OF_MONTH));
+		assertEquals(next, Rollup.day(next));
+	}
+
+	@Test
+	public void add() {
+		Rollup rollup = new Rollup(0, null);
+		assertTrue(rollup.overall.get());
+
+		Workout workout = new Workout();
+		workout.duration.set(600);
+		workout.distance.set(2000);
+		workout.strokes.set(180);
+		workout.energy.set(120);
+
+		rollup.add(workout);
+		rollup.add(workout);
+
+		assertEquals(Integer.valueOf(2), rollup.count.get());
+		assertEquals(Integer.valueOf(1200), rollup.duration.get());
+		assertEquals(Integer.valueOf(4000), rollup.distance.get());
+		assertEquals(Integer.valueOf(360), rollup.strokes.get());
+		assertEquals(Integer.valueOf(240), rollup.energy.get());
+
+		Rollup week = new Rollup();
+		week.add(rollup);
+		week.add(rollup);
+		assertEquals(Integer.valueOf(4), week.count.get());
+		assertEquals(Integer.valueOf(8000), week.distance.get());
+
+		rollup.clear();
+		assertEquals(Integer.valueOf(0), rollup.count.get());
+		assertEquals(Integer.valueOf(0), rollup.distance.get());
+	}
+
+	@Test
+	public void program() {
+		Rollup rollup = new Rollup(0, new Program("Test"));
+
+		assertFalse(rollup.overall.get());
+	}
+}
@@ -0,0 +1,133 @@
+package svenmeier.coxswain.gym;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for {@link SnapshotColumns}.
+ */
+public class SnapshotColumnsTest {
+
+	@Test
+	public void zigzag() {
+		for (int value : new int[]{0, -1, 1, -2, 2, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+			assertEquals(value, SnapshotColumns.unzigzag(SnapshotColumns.zigzag(value)));
+		}
+		assertEquals(0, SnapshotColumns.zigzag(0));
+		assertEquals(1, SnapshotColumns.zigzag(-1));
+		assertEquals(2, SnapshotColumns.zigzag(1));
+	}
+
+	@Test
+	public void roundtrip() {
+		int count = 3600;
+		int[][] columns = workout(count);
+
+		byte[] data = SnapshotColumns.encode(columns, count);
+
+		SnapshotColumns decoded = new SnapshotColumns(data);
+		assertEquals(count, decoded.getCount());
+
+		int[] values = new int[count];
+		for (int c = 0; c < SnapshotColumns.COLUMNS; c++) {
+			decoded.decode(c, 0, count, values);
+			for (int index = 0; index < count; index++) {
+				assertEquals(columns[c][index], values[index]);
+			}
+		}
+
+		// all deltas fit into a single byte
+		assertTrue("encoded to " + data.length, data.length <= count * SnapshotColumns.COLUMNS + 32);
+	}
+
+	@Test
+	public void range() {
+		int count = 1000;
+		int[][] columns = workout(count);
+
+		SnapshotColumns decoded = new SnapshotColumns(SnapshotColumns.encode(columns, count));
+
+		int[] values = new int[10];
+		decoded.decode(SnapshotColumns.POWER, 500, 510, values);
+		for (int index = 0; index < 10; index++) {
+			assertEquals(columns[SnapshotColumns.POWER][500 + index], values[index]);
+		}
+	}
+
+	@Test
+	public void empty() {
+		SnapshotColumns decoded = new SnapshotColumns(SnapshotColumns.encode(new int[SnapshotColumns.COLUMNS][0], 0));
+
+		assertEquals(0, decoded.getCount());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void outOfBounds() {
+		SnapshotColumns decoded = new SnapshotColumns(SnapshotColumns.encode(workout(10), 10));
+
+		decoded.decode(SnapshotColumns.DISTANCE, 5, 11, new int[10]);
+	}
+
+	@Test
+	public void downsample() {
+		int count = 95;
+		int[][] columns = workout(count);
+
+		byte[][] downsampled = new SnapshotColumns(SnapshotColumns.encode(columns, count)).downsample(10);
+
+		SnapshotColumns minima = new SnapshotColumns(downsampled[SnapshotColumns.MINIMUM]);
+		SnapshotColumns averages = new SnapshotColumns(downsampled[SnapshotColumns.AVERAGE]);
+		SnapshotColumns maxima = new SnapshotColumns(downsampled[SnapshotColumns.MAXIMUM]);
+		assertEquals(10, minima.getCount());
+		assertEquals(10, averages.getCount());
+		assertEquals(10, maxima.getCount());
+
+		int[] min = new int[10];
+		int[] avg = new int[10];
+		int[] max = new int[10];
+		for (int c = 0; c < SnapshotColumns.COLUMNS; c++) {
+			minima.decode(c, 0, 10, min);
+			averages.decode(c, 0, 10, avg);
+			maxima.decode(c, 0, 10, max);
+
+			for (int b = 0; b < 10; b++) {
+				int from = b * 10;
+				int to = Math.min(from + 10, count);
+
+				int expectedMin = Integer.MAX_VALUE;
+				int expectedMax = Integer.MIN_VALUE;
+				int sum = 0;
+				for (int index = from; index < to; index++) {
+					expectedMin = Math.min(expectedMin, columns[c][index]);
+					expectedMax = Math.max(expectedMax, columns[c][index]);
+					sum += columns[c][index];
+				}
+
+				assertEquals(expectedMin, min[b]);
+				assertEquals(sum / (to - from), avg[b]);
+				assertEquals(expectedMax, max[b]);
+			}
+		}
+	}
+
+	private int[][] workout(int count) {
+		Random random = new Random(42);
+
+		int[][] columns = new int[SnapshotColumns.COLUMNS][count];
+		for (int index = 0; index < count; index++) {
+			columns[SnapshotColumns.DISTANCE][index] = index * 4 + random.nextInt(2);
+			columns[SnapshotColumns.STROKES][index] = index / 3;
+			columns[SnapshotColumns.ENERGY][index] = index / 10;
+			columns[SnapshotColumns.SPEED][index] = 400 + random.nextInt(20);
+			columns[SnapshotColumns.PULSE][index] = 140 + index / 60;
+			columns[SnapshotColumns.STROKE_RATE][index] = 24 + (index / 30) % 2;
+			columns[SnapshotColumns.STROKE_RATIO][index] = 20;
+			columns[SnapshotColumns.POWER][index] = 180 + random.nextInt(30);
+		}
+		return columns;
+	}
+}
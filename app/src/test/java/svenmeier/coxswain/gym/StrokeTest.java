@@ -0,0 +1,48 @@
+package svenmeier.coxswain.gym;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test for {@link Stroke}.
+ */
+public class StrokeTest {
+
+	@Test
+	public void pack() {
+		List<Stroke> strokes = new ArrayList<>();
+		strokes.add(new Stroke(0, 800, 1600, 250, 9));
+		strokes.add(new Stroke(2400, 750, 1500, 310, 10));
+		strokes.add(new Stroke(3600000, 65535, 0, 0, 0));
+
+		byte[] packed = Stroke.pack(strokes);
+		assertEquals(3 * Stroke.SIZE, packed.length);
+
+		List<Stroke> unpacked = Stroke.unpack(packed);
+		assertEquals(strokes.size(), unpacked.size());
+		for (int s = 0; s < strokes.size(); s++) {
+			assertEquals(strokes.get(s).toString(), unpacked.get(s).toString());
+		}
+	}
+
+	@Test
+	public void clamp() {
+		Stroke stroke = new Stroke(1000, 70000, -5, 1000, 12);
+
+		assertEquals(65535, stroke.getDrive());
+		assertEquals(0, stroke.getRecovery());
+
+		List<Stroke> strokes = new ArrayList<>();
+		strokes.add(stroke);
+		assertEquals(65535, Stroke.unpack(Stroke.pack(strokes)).get(0).getDrive());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unpackIllegal() {
+		Stroke.unpack(new byte[Stroke.SIZE + 1]);
+	}
+}
@@ -0,0 +1,110 @@
+package svenmeier.coxswain.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for {@link Metrics}.
+ */
+public class MetricsTest {
+
+	@Test
+	public void counter() throws Exception {
+		Counter counter = Metrics.counter("test.counter");
+		assertSame(counter, Metrics.counter("test.counter"));
+
+		counter.increment();
+		counter.add(41);
+		assertEquals(42, counter.get());
+
+		StringBuilder dump = new StringBuilder();
+		Metrics.dump(dump);
+		assertTrue(dump.toString().contains("test.counter 42\n"));
+
+		Metrics.reset();
+		assertEquals(0, counter.get());
+	}
+
+	@Test
+	public void resetPrefixes() {
+		Counter session = Metrics.counter("test.session.counter");
+		Histogram other = Metrics.histogram("test.other.histogram");
+		session.increment();
+		other.record(1000);
+
+		Metrics.reset("test.session.", "test.none");
+		assertEquals(0, session.get());
+		assertEquals(1, other.getCount());
+	}
+
+	@Test
+	public void mismatch() {
+		Metrics.counter("test.mismatch");
+		try {
+			Metrics.histogram("test.mismatch");
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	public void buckets() {
+		assertEquals(0, Histogram.bucket(999));
+		assertEquals(1, Histogram.bucket(1000));
+		assertEquals(1, Histogram.bucket(1999));
+		assertEquals(2, Histogram.bucket(2000));
+		assertEquals(10, Histogram.bucket(1000000));
+		assertEquals(Histogram.BUCKETS - 1, Histogram.bucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void histogram() {
+		Histogram histogram = Metrics.histogram("test.histogram");
+		assertEquals("none", histogram.toString());
+
+		for (int i = 0; i < 99; i++) {
+			histogram.record(1500000);
+		}
+		histogram.record(50000000);
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(50000000, histogram.getMax());
+		assertEquals((99 * 1500000L + 50000000L) / 100, histogram.getMean());
+
+		// 1.5 ms falls into bucket below 2.048 ms
+		assertEquals(2048000, histogram.getPercentile(0.5));
+		assertEquals(2048000, histogram.getPercentile(0.99));
+		assertEquals(50000000, histogram.getPercentile(1.0));
+	}
+
+	@Test
+	public void concurrent() throws Exception {
+		final Counter counter = Metrics.counter("test.concurrent");
+		final Histogram histogram = Metrics.histogram("test.concurrent.histogram");
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 100000; i++) {
+						counter.increment();
+						histogram.record(i);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(400000, counter.get());
+		assertEquals(400000, histogram.getCount());
+		assertEquals(99999, histogram.getMax());
+	}
+}
@@ -0,0 +1,142 @@
+package svenmeier.coxswain.rower;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for {@link BinaryTrace}.
+ */
+public class BinaryTraceTest {
+
+	private File dir;
+
+	@Before
+	public void before() throws Exception {
+		dir = Files.createTempDirectory("trace").toFile();
+	}
+
+	private String convert(List<File> files) throws Exception {
+		StringWriter writer = new StringWriter();
+		for (File file : files) {
+			InputStream input = new FileInputStream(file);
+			try {
+				TraceRecords.convert(input, writer);
+			} finally {
+				input.close();
+			}
+		}
+		return writer.toString();
+	}
+
+	@Test
+	public void test() throws Exception {
+		BinaryTrace trace = new BinaryTrace(dir, "test", 1024, 4, 2);
+
+		trace.comment("protocol 4");
+		trace.onOutput("USB");
+		trace.onInput("_WR_");
+		trace.close();
+
+		assertEquals("#protocol 4\n>USB\n<_WR_\n", convert(trace.getFiles()));
+	}
+
+	@Test
+	public void rotate() throws Exception {
+		BinaryTrace trace = new BinaryTrace(dir, "test", 64, 2, 2);
+
+		for (int i = 0; i < 100; i++) {
+			trace.onInput("IDD140" + i);
+		}
+		trace.close();
+
+		List<File> files = trace.getFiles();
+		assertEquals(2, files.size());
+
+		String text = convert(files);
+		assertTrue(text.endsWith("<IDD14099\n"));
+		assertFalse(text.startsWith("<IDD1400\n"));
+	}
+
+	@Test
+	public void sessions() throws Exception {
+		BinaryTrace first = new BinaryTrace(dir, "test", 1024, 4, 2);
+		first.close();
+		BinaryTrace second = new BinaryTrace(dir, "test", 1024, 4, 2);
+		second.close();
+		BinaryTrace third = new BinaryTrace(dir, "test", 1024, 4, 2);
+		third.close();
+
+		assertTrue(first.getFiles().isEmpty());
+		assertEquals(1, second.getFiles().size());
+		assertEquals(1, third.getFiles().size());
+	}
+
+	@Test
+	public void drop() throws Exception {
+		TraceQueue queue = new TraceQueue(2, 4);
+
+		assertTrue(queue.offer(1, TraceRecords.INPUT, "ab"));
+		assertTrue(queue.offer(2, TraceRecords.INPUT, "abcdef"));
+		assertFalse(queue.offer(3, TraceRecords.INPUT, "c"));
+		assertEquals(1, queue.dropped());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		TraceRecords.writeHeader(output);
+		assertTrue(queue.poll(output));
+		assertTrue(queue.poll(output));
+		assertFalse(queue.poll(output));
+
+		StringWriter writer = new StringWriter();
+		TraceRecords.convert(new ByteArrayInputStream(bytes.toByteArray()), writer);
+		assertEquals("<ab\n<abcd\n", writer.toString());
+	}
+
+	@Test
+	public void concurrent() throws Exception {
+		final BinaryTrace trace = new BinaryTrace(dir, "test", 1024 * 1024, 4, 2);
+
+		Thread[] producers = new Thread[4];
+		for (int p = 0; p < producers.length; p++) {
+			producers[p] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						trace.onInput("IDD1400023");
+					}
+				}
+			});
+			producers[p].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		trace.close();
+
+		int inputs = 0;
+		int dropped = 0;
+		for (String line : convert(trace.getFiles()).split("\n")) {
+			if (line.equals("<IDD1400023")) {
+				inputs++;
+			} else {
+				assertTrue(line, line.startsWith("#dropped "));
+				dropped += Integer.parseInt(line.substring("#dropped ".length()));
+			}
+		}
+		assertEquals(40000, inputs + dropped);
+	}
+}
@@ -0,0 +1,76 @@
+package svenmeier.coxswain.rower;
+
+import org.junit.Test;
+
+import svenmeier.coxswain.gym.Measurement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for {@link Frames}.
+ */
+public class FramesTest {
+
+	@Test
+	public void test() {
+		Frames frames = new Frames();
+
+		Measurement measurement = new Measurement();
+
+		Measurement initial = frames.acquire();
+		assertEquals(0, initial.getDistance());
+
+		measurement.setDistance(1);
+		frames.publish(measurement);
+		measurement.setDistance(2);
+		frames.publish(measurement);
+
+		Measurement frame = frames.acquire();
+		assertEquals(2, frame.getDistance());
+
+		// unchanged until next publication
+		measurement.setDistance(3);
+		assertSame(frame, frames.acquire());
+		assertEquals(2, frame.getDistance());
+
+		frames.publish(measurement);
+		assertEquals(3, frames.acquire().getDistance());
+	}
+
+	@Test
+	public void concurrent() throws Exception {
+		final Frames frames = new Frames();
+
+		final int count = 1000000;
+
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Measurement measurement = new Measurement();
+				for (int i = 1; i <= count; i++) {
+					measurement.setDistance(i);
+					measurement.setStrokes(i);
+					measurement.setEnergy(i);
+					frames.publish(measurement);
+				}
+			}
+		});
+		producer.start();
+
+		int last = 0;
+		while (last < count) {
+			Measurement frame = frames.acquire();
+
+			int distance = frame.getDistance();
+			assertEquals(distance, frame.getStrokes());
+			assertEquals(distance, frame.getEnergy());
+			assertTrue(distance >= last);
+
+			last = distance;
+		}
+
+		producer.join();
+	}
+}
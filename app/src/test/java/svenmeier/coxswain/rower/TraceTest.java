@@ -0,0 +1,102 @@
+package svenmeier.coxswain.rower;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+
+import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.rower.wired.Protocol3;
+import svenmeier.coxswain.rower.wired.usb.ReplayTransfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for lazy tracing with {@link ITrace}.
+ */
+public class TraceTest {
+
+	private static final byte[] MESSAGE = new byte[]{(byte) 0xFD, (byte) 0x01, (byte) 0x02};
+
+	@Test
+	public void raw() throws Exception {
+		File dir = Files.createTempDirectory("trace").toFile();
+
+		BinaryTrace trace = new BinaryTrace(dir, "test", 1024, 1, 1);
+		assertTrue(trace.isEnabled());
+		trace.comment("elapsed time %+d = %d", 5, 10);
+		trace.onInput(MESSAGE, 1, 2);
+		trace.close();
+		assertEquals(false, trace.isEnabled());
+
+		StringWriter text = new StringWriter();
+		TraceRecords.convert(new FileInputStream(trace.getFiles().get(0)), text);
+		assertEquals("#elapsed time +5 = 10\n<01 02\n", text.toString());
+
+		TraceReader reader = new TraceReader(new FileInputStream(trace.getFiles().get(0)));
+		assertTrue(reader.next());
+		assertTrue(reader.next());
+		assertEquals(TraceRecords.INPUT, reader.getType());
+		assertEquals("01 02", reader.getPayload());
+		reader.close();
+	}
+
+	/**
+	 * A disabled trace is not handed any input, so nothing is copied or formatted for it.
+	 */
+	@Test
+	public void disabled() throws Exception {
+		CountingTrace disabled = new CountingTrace(false);
+		replay(disabled);
+		assertEquals(0, disabled.inputs);
+
+		CountingTrace enabled = new CountingTrace(true);
+		replay(enabled);
+		assertTrue(enabled.inputs > 0);
+	}
+
+	private void replay(ITrace trace) throws Exception {
+		TraceReader reader = new TraceReader(getClass().getResourceAsStream("/waterrower.trace"));
+		ReplayTransfer transfer = new ReplayTransfer(reader, false);
+
+		Protocol3 protocol = new Protocol3(transfer, trace);
+		protocol.setThrottle(0);
+
+		Measurement measurement = new Measurement();
+		while (transfer.isFinished() == false) {
+			protocol.transfer(measurement);
+		}
+	}
+
+	/**
+	 * Trace counting its inputs.
+	 */
+	private static class CountingTrace extends NullTrace {
+
+		private final boolean enabled;
+
+		public int inputs;
+
+		CountingTrace(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		@Override
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		@Override
+		public void onInput(CharSequence string) {
+			inputs++;
+		}
+
+		@Override
+		public void onInput(byte[] bytes, int offset, int length) {
+			inputs++;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package svenmeier.coxswain.rower.wired;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import svenmeier.coxswain.gym.Measurement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test for {@link NumberFields}.
+ */
+public class NumberFieldsTest {
+
+	private NumberField field(int address, int size) {
+		return new NumberField(address, size) {
+			@Override
+			protected void onUpdate(int value, Measurement measurement) {
+			}
+		};
+	}
+
+	@Test
+	public void test() {
+		NumberFields numbers = new NumberFields(4);
+
+		NumberField single = field(0x1A0, NumberField.SINGLE_BYTE);
+		NumberField dual = field(0x1A0, NumberField.DOUBLE_BYTE);
+
+		numbers.add(single);
+		numbers.add(dual);
+		assertEquals(2, numbers.size());
+
+		assertSame(single, numbers.get(NumberField.SINGLE_BYTE, 0x1A0));
+		assertSame(dual, numbers.get(NumberField.DOUBLE_BYTE, 0x1A0));
+		assertNull(numbers.get(NumberField.TRIPLE_BYTE, 0x1A0));
+
+		numbers.remove(single);
+		assertEquals(1, numbers.size());
+		assertNull(numbers.get(NumberField.SINGLE_BYTE, 0x1A0));
+		assertSame(dual, numbers.get(NumberField.DOUBLE_BYTE, 0x1A0));
+	}
+
+	@Test
+	public void all() {
+		NumberFields numbers = new NumberFields(2);
+
+		List<NumberField> fields = new ArrayList<>();
+		for (int address = 0; address <= 0xFFF; address += 7) {
+			NumberField field = field(address, 1 + address % 3);
+			fields.add(field);
+			numbers.add(field);
+		}
+		assertEquals(fields.size(), numbers.size());
+
+		for (int f = 0; f < fields.size(); f += 2) {
+			numbers.remove(fields.get(f));
+		}
+
+		for (int f = 0; f < fields.size(); f++) {
+			NumberField field = fields.get(f);
+
+			if (f % 2 == 0) {
+				assertNull(numbers.get(field.size, field.address));
+			} else {
+				assertSame(field, numbers.get(field.size, field.address));
+			}
+		}
+	}
+}
@@ -3,10 +3,12 @@ package svenmeier.coxswain.rower.wired;
 import org.junit.Test;
 
 import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.metrics.Metrics;
 import svenmeier.coxswain.rower.wired.usb.ITransfer;
 import svenmeier.coxswain.rower.wired.usb.TestTransfer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  */
@@ -19,7 +21,7 @@ public class Protocol4Test {
 		TestTransfer transfer = new TestTransfer();
 		TestTrace trace = new TestTrace();
 
-		Protocol4 protocol = new Protocol4(transfer, trace);
+		Protocol4 protocol = new Protocol4(transfer, trace, new TestClock());
 		assertEquals(115200, transfer.baudrate);
 		assertEquals(0, transfer.dataBits);
 		assertEquals(TestTransfer.PARITY_NONE, transfer.parity);
@@ -45,6 +47,11 @@ public class Protocol4Test {
 		transfer.setupInput("IDT1E1151515\r\n");
 		protocol.transfer(measurement);
 		assertEquals(((15 * 60) + 15)*60 +15, measurement.getDuration());
+		assertEquals((((15 * 60) + 15)*60 +15) * 1000, measurement.getElapsed());
+
+		transfer.setupInput("IDS1E045\r\n");
+		protocol.transfer(measurement);
+		assertEquals((((15 * 60) + 15)*60 +15) * 1000 + 450, measurement.getElapsed());
 
 		transfer.setupInput("IDT08A0003E8\r\n");
 		protocol.transfer(measurement);
@@ -54,6 +61,170 @@ public class Protocol4Test {
 		transfer.setupInput("IDT08A0003");
 		protocol.transfer(measurement);
 
-		assertEquals("#protocol 4>USB<_WR_#handshake complete>IV?<IV42020#version 42020>IRD140<IDT1E1151515>IRD057<IDT08A0003E8>IRD14A>IRS1A9", trace.toString());
+		assertEquals("#protocol 4>USB<_WR_#handshake complete>IV?<IV42020#version 42020>IRD140<IDT1E1151515>IRD057<IDS1E045>IRD14A<IDT08A0003E8>IRS1A9>IRS1E0", trace.toString());
+	}
+
+	@Test
+	public void rollover() throws Exception {
+		TestTransfer transfer = new TestTransfer();
+		TestClock clock = new TestClock();
+
+		Protocol4 protocol = new Protocol4(transfer, new TestTrace(), clock);
+		protocol.setThrottle(0);
+
+		protocol.transfer(measurement);
+		transfer.setupInput("_WR_\r\n");
+		protocol.transfer(measurement);
+
+		transfer.setupInput("IDT1E1000005\r\n");
+		protocol.transfer(measurement);
+		assertEquals(5000, measurement.getElapsed());
+
+		transfer.setupInput("IDS1E095\r\n");
+		protocol.transfer(measurement);
+		assertEquals(5950, measurement.getElapsed());
+		assertEquals(clock.nanos(), measurement.getTimestamp());
+
+		clock.time += 50;
+		transfer.setupInput("IDT1E1000006\r\n");
+		protocol.transfer(measurement);
+		assertEquals(6000, measurement.getElapsed());
+		assertEquals(clock.nanos(), measurement.getTimestamp());
+
+		// read before the duration rolled over
+		clock.time += 10;
+		transfer.setupInput("IDS1E095\r\n");
+		protocol.transfer(measurement);
+		assertEquals(6000, measurement.getElapsed());
+
+		clock.time += 40;
+		transfer.setupInput("IDS1E010\r\n");
+		protocol.transfer(measurement);
+		assertEquals(6100, measurement.getElapsed());
+
+		clock.time += 100;
+		transfer.setupInput("IDS1E020\r\n");
+		protocol.transfer(measurement);
+		assertEquals(6200, measurement.getElapsed());
+		assertEquals(6, measurement.getDuration());
+
+		// refresh intervals of hundredths
+		assertTrue(Metrics.histogram("protocol4.refresh.1E0").getCount() >= 3);
+	}
+
+	@Test
+	public void schedule() throws Exception {
+		TestTransfer transfer = new TestTransfer();
+		TestTrace trace = new TestTrace();
+
+		Protocol4 protocol = new Protocol4(transfer, trace, new TestClock());
+		protocol.setThrottle(0);
+
+		protocol.transfer(measurement);
+		transfer.setupInput("_WR_\r\n");
+		protocol.transfer(measurement);
+		transfer.setupInput("IV42020\r\n");
+		for (int t = 0; t < 10; t++) {
+			protocol.transfer(measurement);
+		}
+
+		// fast fields first, then default and slow ones, then none is due
+		assertEquals("#protocol 4>USB<_WR_#handshake complete>IV?<IV42020#version 42020>IRD140>IRD057>IRD14A>IRS1A9>IRS1E0>IRT1E1>IRD088>IRS1A0>IRT08A", trace.toString());
+	}
+
+	@Test
+	public void pipelined() throws Exception {
+		TestTransfer transfer = new TestTransfer();
+		TestTrace trace = new TestTrace();
+
+		Protocol4 protocol = new Protocol4(transfer, trace, new TestClock());
+		protocol.setThrottle(0);
+		protocol.setPipelined(true);
+
+		protocol.transfer(measurement);
+		transfer.assertOutput("USB\r\n");
+
+		transfer.setupInput("_WR_\r\n");
+		protocol.transfer(measurement);
+		transfer.assertOutput("IV?\r\n");
+
+		// numbers packed up to the max packet size
+		transfer.setupInput("IV42020\r\n");
+		protocol.transfer(measurement);
+		transfer.assertOutput("IRD140\r\nIRD057\r\nIRD14A\r\nIRS1A9\r\nIRS1E0\r\nIRT1E1\r\nIRD088\r\nIRS1A0\r\n");
+
+		// all outstanding
+		protocol.transfer(measurement);
+		assertEquals(0, transfer.outputLength);
+
+		long roundTrips = Metrics.histogram("protocol4.round-trip").getCount();
+
+		transfer.setupInput("IDD1400023\r\nIDD05701F4\r\n");
+		protocol.transfer(measurement);
+		transfer.assertOutput("IRT08A\r\n");
+		assertEquals(35, measurement.getStrokes());
+		assertEquals(500, measurement.getDistance());
+
+		// each answered request timed
+		assertEquals(roundTrips + 2, Metrics.histogram("protocol4.round-trip").getCount());
+	}
+
+	@Test
+	public void inPlace() throws Exception {
+		String[] inputs = new String[]{
+				"_WR_\r\n",
+				"IV42020\r\n",
+				"IDT1E1151515\r\n",
+				"IDT08A0003E8\r\n",
+				"IDD1400023\r\nIDD05701F4\r\n",
+				"IDD14A00C8\r\nIDS1A91C\r\n",
+				"IDS1A048\r\n",
+				"SS\r\nIDD088012C\r\nSE\r\n",
+				"IDD9990001\r\n",
+				"ERROR\r\n",
+				"IDT08A0003"
+		};
+
+		// both protocols see the same time, so their requests are identical
+		TestClock clock = new TestClock();
+
+		TestTransfer fieldTransfer = new TestTransfer();
+		TestTrace fieldTrace = new TestTrace();
+		Measurement fieldMeasurement = new Measurement();
+		Protocol4 fieldProtocol = new Protocol4(fieldTransfer, fieldTrace, clock);
+		fieldProtocol.setThrottle(0);
+		fieldProtocol.setInPlace(false);
+
+		TestTransfer inPlaceTransfer = new TestTransfer();
+		TestTrace inPlaceTrace = new TestTrace();
+		Measurement inPlaceMeasurement = new Measurement();
+		Protocol4 inPlaceProtocol = new Protocol4(inPlaceTransfer, inPlaceTrace, clock);
+		inPlaceProtocol.setThrottle(0);
+		inPlaceProtocol.setInPlace(true);
+
+		for (String input : inputs) {
+			fieldTransfer.setupInput(input);
+			fieldProtocol.transfer(fieldMeasurement);
+
+			inPlaceTransfer.setupInput(input);
+			inPlaceProtocol.transfer(inPlaceMeasurement);
+
+			clock.time += 10;
+
+			assertEquals(fieldTrace.toString(), inPlaceTrace.toString());
+
+			assertEquals(fieldMeasurement.getDuration(), inPlaceMeasurement.getDuration());
+			assertEquals(fieldMeasurement.getDistance(), inPlaceMeasurement.getDistance());
+			assertEquals(fieldMeasurement.getStrokes(), inPlaceMeasurement.getStrokes());
+			assertEquals(fieldMeasurement.getEnergy(), inPlaceMeasurement.getEnergy());
+			assertEquals(fieldMeasurement.getSpeed(), inPlaceMeasurement.getSpeed());
+			assertEquals(fieldMeasurement.getPulse(), inPlaceMeasurement.getPulse());
+			assertEquals(fieldMeasurement.getStrokeRate(), inPlaceMeasurement.getStrokeRate());
+			assertEquals(fieldMeasurement.getPower(), inPlaceMeasurement.getPower());
+		}
+
+		assertEquals(35, inPlaceMeasurement.getStrokes());
+		assertEquals(500, inPlaceMeasurement.getDistance());
+		assertEquals(72, inPlaceMeasurement.getPulse());
 	}
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package svenmeier.coxswain.rower.wired;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+
+import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.rower.BinaryTrace;
+import svenmeier.coxswain.rower.NullTrace;
+import svenmeier.coxswain.rower.TraceReader;
+import svenmeier.coxswain.rower.wired.usb.ReplayTransfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for {@link ReplayTransfer}.
+ */
+public class ReplayTransferTest {
+
+	private static final String TRACE = "#protocol 4\n" +
+			">USB\n" +
+			"<_WR_\n" +
+			"#handshake complete\n" +
+			">IV?\n" +
+			"<IV42020\n" +
+			"<IDD1400023\n" +
+			"<IDD05701F4\n" +
+			"<IDS1A048\n";
+
+	@Test
+	public void protocol3() throws Exception {
+		TraceReader reader = new TraceReader(getClass().getResourceAsStream("/waterrower.trace"));
+		ReplayTransfer transfer = new ReplayTransfer(reader, false);
+		assertEquals(3, transfer.getProtocol());
+
+		Measurement measurement = new Measurement();
+		Protocol3 protocol = new Protocol3(transfer, new NullTrace());
+		protocol.setThrottle(0);
+
+		while (transfer.isFinished() == false) {
+			protocol.transfer(measurement);
+		}
+
+		assertEquals(363, measurement.getStrokes());
+		assertEquals(1510, measurement.getDistance());
+	}
+
+	@Test
+	public void garbled() throws Exception {
+		String trace = "#protocol 3\n" +
+				"<\n" +
+				"<XY 00\n" +
+				"<FE 01\n";
+		TraceReader reader = new TraceReader(new ByteArrayInputStream(trace.getBytes("US-ASCII")));
+		ReplayTransfer transfer = new ReplayTransfer(reader, false);
+
+		Protocol3 protocol = new Protocol3(transfer, new NullTrace());
+		protocol.setThrottle(0);
+
+		Measurement measurement = new Measurement();
+		while (transfer.isFinished() == false) {
+			protocol.transfer(measurement);
+		}
+
+		assertEquals(3, transfer.getInputs());
+	}
+
+	@Test
+	public void protocol4() throws Exception {
+		TraceReader reader = new TraceReader(new ByteArrayInputStream(TRACE.getBytes("US-ASCII")));
+		ReplayTransfer transfer = new ReplayTransfer(reader, false);
+		assertEquals(4, transfer.getProtocol());
+
+		Measurement measurement = new Measurement();
+		Protocol4 protocol = new Protocol4(transfer, new NullTrace());
+		protocol.setThrottle(0);
+
+		while (transfer.isFinished() == false) {
+			protocol.transfer(measurement);
+		}
+
+		assertEquals("42020", protocol.getVersion());
+		assertEquals(35, measurement.getStrokes());
+		assertEquals(500, measurement.getDistance());
+		assertEquals(72, measurement.getPulse());
+		assertEquals(5, transfer.getInputs());
+	}
+
+	@Test
+	public void realtime() throws Exception {
+		TraceReader reader = new TraceReader(new ByteArrayInputStream(TRACE.getBytes("US-ASCII")));
+		ReplayTransfer transfer = new ReplayTransfer(reader, true);
+
+		Measurement measurement = new Measurement();
+		Protocol4 protocol = new Protocol4(transfer, new NullTrace());
+
+		long start = System.currentTimeMillis();
+		while (transfer.isFinished() == false) {
+			protocol.transfer(measurement);
+		}
+
+		// five inputs in text intervals
+		assertTrue(System.currentTimeMillis() - start >= 4 * ReplayTransfer.TEXT_INTERVAL);
+		assertEquals(72, measurement.getPulse());
+	}
+
+	@Test
+	public void binary() throws Exception {
+		File dir = Files.createTempDirectory("trace").toFile();
+
+		BinaryTrace trace = new BinaryTrace(dir, "test", 1024, 1, 1);
+		TraceReader text = new TraceReader(new ByteArrayInputStream(TRACE.getBytes("US-ASCII")));
+		while (text.next()) {
+			if (text.getType() == '#') {
+				trace.comment(text.getPayload());
+			} else if (text.getType() == '>') {
+				trace.onOutput(text.getPayload());
+			} else {
+				trace.onInput(text.getPayload());
+			}
+		}
+		trace.close();
+
+		TraceReader reader = new TraceReader(new FileInputStream(trace.getFiles().get(0)));
+		ReplayTransfer transfer = new ReplayTransfer(reader, true);
+
+		Measurement measurement = new Measurement();
+		Protocol4 protocol = new Protocol4(transfer, new NullTrace());
+
+		while (transfer.isFinished() == false) {
+			protocol.transfer(measurement);
+		}
+
+		assertEquals(500, measurement.getDistance());
+		assertEquals(5, transfer.getInputs());
+	}
+}
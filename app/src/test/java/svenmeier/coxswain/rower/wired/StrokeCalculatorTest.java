@@ -0,0 +1,101 @@
+package svenmeier.coxswain.rower.wired;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.gym.Stroke;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test for {@link StrokeCalculator}.
+ */
+public class StrokeCalculatorTest {
+
+	Measurement measurement = new Measurement();
+
+	List<Stroke> strokes = new ArrayList<>();
+
+	@Test
+	public void test() {
+		StrokeCalculator calculator = new StrokeCalculator();
+		calculator.setListener(new Stroke.Listener() {
+			@Override
+			public void onStroke(Stroke stroke) {
+				strokes.add(stroke);
+			}
+		});
+
+		long now = 100000;
+
+		// end without start is ignored
+		calculator.strokeEnd(measurement, now);
+
+		measurement.setElapsed(1000, 0);
+		measurement.setDistance(5);
+		calculator.strokeStart(measurement, now);
+		calculator.strokeStart(measurement, now + 100);
+		calculator.power(200);
+		calculator.power(300);
+		calculator.power(250);
+
+		now += 800;
+		calculator.strokeEnd(measurement, now);
+		calculator.strokeEnd(measurement, now + 100);
+
+		assertEquals(0, strokes.size());
+
+		now += 1600;
+		measurement.setElapsed(3400, 0);
+		measurement.setDistance(14);
+		calculator.strokeStart(measurement, now);
+
+		assertEquals(1, strokes.size());
+		Stroke stroke = strokes.get(0);
+		assertEquals(1000, stroke.getStart());
+		assertEquals(800, stroke.getDrive());
+		assertEquals(1600, stroke.getRecovery());
+		assertEquals(300, stroke.getPeakPower());
+		assertEquals(9, stroke.getDistance());
+
+		calculator.power(150);
+		now += 700;
+		calculator.strokeEnd(measurement, now);
+
+		now += 1400;
+		measurement.setDistance(22);
+		calculator.strokeStart(measurement, now);
+
+		assertEquals(2, strokes.size());
+		stroke = strokes.get(1);
+		assertEquals(3400, stroke.getStart());
+		assertEquals(700, stroke.getDrive());
+		assertEquals(1400, stroke.getRecovery());
+		assertEquals(150, stroke.getPeakPower());
+		assertEquals(8, stroke.getDistance());
+	}
+
+	@Test
+	public void clear() {
+		StrokeCalculator calculator = new StrokeCalculator();
+		calculator.setListener(new Stroke.Listener() {
+			@Override
+			public void onStroke(Stroke stroke) {
+				strokes.add(stroke);
+			}
+		});
+
+		long now = 100000;
+		calculator.strokeStart(measurement, now);
+		calculator.strokeEnd(measurement, now + 800);
+
+		calculator.clear();
+
+		calculator.strokeStart(measurement, now + 2400);
+
+		assertEquals(0, strokes.size());
+	}
+}
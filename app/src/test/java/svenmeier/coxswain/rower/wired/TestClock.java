@@ -0,0 +1,19 @@
+package svenmeier.coxswain.rower.wired;
+
+/**
+ * Clock advancing on request only.
+ */
+class TestClock implements Protocol4.Clock {
+
+	public long time = 1000000;
+
+	@Override
+	public long now() {
+		return time;
+	}
+
+	@Override
+	public long nanos() {
+		return time * 1000000;
+	}
+}
@@ -1,6 +1,7 @@
 package svenmeier.coxswain.rower.wired;
 
 import svenmeier.coxswain.rower.ITrace;
+import svenmeier.coxswain.util.ByteUtils;
 
 import static org.junit.Assert.assertEquals;
 
@@ -10,12 +11,27 @@ class TestTrace implements ITrace {
 
 	public StringBuilder result = new StringBuilder();
 
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
 	@Override
 	public void comment(CharSequence string) {
 		result.append('#');
 		result.append(string);
 	}
 
+	@Override
+	public void comment(String format, long value) {
+		comment(String.format(format, value));
+	}
+
+	@Override
+	public void comment(String format, long value1, long value2) {
+		comment(String.format(format, value1, value2));
+	}
+
 	@Override
 	public void onOutput(CharSequence string) {
 		result.append('>');
@@ -28,6 +44,11 @@ class TestTrace implements ITrace {
 		result.append(string);
 	}
 
+	@Override
+	public void onInput(byte[] bytes, int offset, int length) {
+		onInput(ByteUtils.toHex(bytes, offset, length));
+	}
+
 	@Override
 	public void close() {
 
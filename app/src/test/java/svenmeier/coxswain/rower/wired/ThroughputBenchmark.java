@@ -0,0 +1,90 @@
+package svenmeier.coxswain.rower.wired;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.metrics.Counter;
+import svenmeier.coxswain.metrics.Metrics;
+import svenmeier.coxswain.rower.NullTrace;
+import svenmeier.coxswain.rower.wired.usb.TestTransfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Throughput of megabytes of recorded S4 traffic through {@link Protocol3} and {@link Protocol4},
+ * opt-in with {@code ./gradlew test -Pcoxswain-benchmark}.
+ *
+ * @see ThroughputTest
+ */
+public class ThroughputBenchmark {
+
+	private static final int MEGABYTES = 4;
+
+	@Before
+	public void optIn() {
+		assumeTrue(Boolean.getBoolean("coxswain.benchmark"));
+	}
+
+	@Test
+	public void protocol3() throws IOException {
+		byte[] recorded = ThroughputTest.recorded3();
+
+		TestTransfer transfer = new TestTransfer();
+		Protocol3 protocol = new Protocol3(transfer, new NullTrace());
+		protocol.setThrottle(0);
+
+		Measurement measurement = new Measurement();
+
+		int repetitions = repetitions(recorded);
+		Counter messages = Metrics.counter("protocol3.messages");
+		long messagesBefore = messages.get();
+
+		long start = System.nanoTime();
+		for (int r = 0; r < repetitions; r++) {
+			ThroughputTest.push(transfer, protocol, measurement, recorded);
+		}
+		report("protocol 3", (long)repetitions * recorded.length, messages.get() - messagesBefore, System.nanoTime() - start);
+
+		assertEquals(363 * repetitions, measurement.getStrokes());
+	}
+
+	@Test
+	public void protocol4() throws IOException {
+		byte[] recorded = ThroughputTest.recorded4();
+
+		TestTransfer transfer = new TestTransfer();
+		Protocol4 protocol = new Protocol4(transfer, new NullTrace());
+		protocol.setThrottle(0);
+
+		Measurement measurement = new Measurement();
+
+		transfer.setupInput("_WR_\r\n");
+		protocol.transfer(measurement);
+
+		int repetitions = repetitions(recorded);
+		Counter messages = Metrics.counter("protocol4.messages");
+		long messagesBefore = messages.get();
+
+		long start = System.nanoTime();
+		for (int r = 0; r < repetitions; r++) {
+			ThroughputTest.push(transfer, protocol, measurement, recorded);
+		}
+		report("protocol 4", (long)repetitions * recorded.length, messages.get() - messagesBefore, System.nanoTime() - start);
+
+		assertEquals(500, measurement.getDistance());
+	}
+
+	private int repetitions(byte[] recorded) {
+		return (MEGABYTES * 1024 * 1024) / recorded.length + 1;
+	}
+
+	private void report(String name, long bytes, long messages, long nanos) {
+		double seconds = nanos / 1000000000d;
+
+		System.out.println(String.format("%s: %d bytes, %d messages in %d ms, %.1f MB/s, %.0f messages/s", name, bytes, messages, nanos / 1000000, (bytes / (1024d * 1024d)) / seconds, messages / seconds));
+	}
+}
@@ -0,0 +1,112 @@
+package svenmeier.coxswain.rower.wired;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import svenmeier.coxswain.gym.Measurement;
+import svenmeier.coxswain.rower.NullTrace;
+import svenmeier.coxswain.rower.wired.usb.TestTransfer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Recorded S4 traffic pushed repeatedly in packets through {@link Protocol3} and {@link Protocol4}.
+ *
+ * @see ThroughputBenchmark
+ */
+public class ThroughputTest {
+
+	private static final int REPETITIONS = 3;
+
+	private static final int PACKET_SIZE = 64;
+
+	@Test
+	public void protocol3() throws IOException {
+		byte[] recorded = recorded3();
+
+		TestTransfer transfer = new TestTransfer();
+		Protocol3 protocol = new Protocol3(transfer, new NullTrace());
+		protocol.setThrottle(0);
+
+		Measurement measurement = new Measurement();
+
+		for (int r = 0; r < REPETITIONS; r++) {
+			push(transfer, protocol, measurement, recorded);
+		}
+
+		assertEquals(363 * REPETITIONS, measurement.getStrokes());
+	}
+
+	@Test
+	public void protocol4() throws IOException {
+		byte[] recorded = recorded4();
+
+		TestTransfer transfer = new TestTransfer();
+		Protocol4 protocol = new Protocol4(transfer, new NullTrace());
+		protocol.setThrottle(0);
+
+		Measurement measurement = new Measurement();
+
+		transfer.setupInput("_WR_\r\n");
+		protocol.transfer(measurement);
+
+		for (int r = 0; r < REPETITIONS; r++) {
+			push(transfer, protocol, measurement, recorded);
+		}
+
+		assertEquals(35, measurement.getStrokes());
+		assertEquals(500, measurement.getDistance());
+		assertEquals(((15 * 60) + 15) * 60 + 15, measurement.getDuration());
+	}
+
+	/**
+	 * Push bytes in packets, each followed by a transfer.
+	 */
+	static void push(TestTransfer transfer, IProtocol protocol, Measurement measurement, byte[] bytes) {
+		int offset = 0;
+		while (offset < bytes.length) {
+			offset += transfer.appendInput(bytes, offset, Math.min(PACKET_SIZE, bytes.length - offset));
+
+			protocol.transfer(measurement);
+		}
+	}
+
+	/**
+	 * Protocol 4 responses of a short session.
+	 */
+	static byte[] recorded4() throws IOException {
+		ByteArrayOutputStream responses = new ByteArrayOutputStream();
+		for (String response : new String[]{"IDD1400023", "IDD05701F4", "IDD14A00C8", "IDS1A91C", "IDS1A048", "PING", "SS", "IDD088012C", "SE", "IDT08A0003E8", "IDS1E005", "IDT1E1151515"}) {
+			responses.write(response.getBytes("US-ASCII"));
+			responses.write('\r');
+			responses.write('\n');
+		}
+		return responses.toByteArray();
+	}
+
+	/**
+	 * Protocol 3 bytes received in the recorded trace.
+	 */
+	static byte[] recorded3() throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(ThroughputTest.class.getResourceAsStream("/waterrower.trace")));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		while (true) {
+			String line = reader.readLine();
+
+			if (line == null) {
+				break;
+			} else if (line.startsWith("<")) {
+				for (String hex : line.substring(1).split("\\s+")) {
+					bytes.write(Integer.parseInt(hex, 16));
+				}
+			}
+		}
+
+		return bytes.toByteArray();
+	}
+}
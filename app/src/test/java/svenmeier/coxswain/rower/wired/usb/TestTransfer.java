@@ -9,13 +9,17 @@ import static org.junit.Assert.assertEquals;
 public class TestTransfer implements ITransfer {
 
 	public int baudrate;
-	public int bufferLength = 0;
 	public int dataBits;
 	public int parity;
 	public int stopBits;
 	public boolean tx;
 
-	public byte[] buffer = new byte[256];
+	public byte[] output = new byte[256];
+	public int outputLength = 0;
+
+	public int maxPacketSize = 64;
+
+	private Consumer consumer = new Consumer(256);
 
 	@Override
 	public void setBaudrate(int baudrate) {
@@ -34,63 +38,87 @@ public class TestTransfer implements ITransfer {
 	public void setTimeout(int timeout) {
 	}
 
+	/**
+	 * Replace any pending input.
+	 */
 	public void setupInput(String buffer) {
-		for (int b = 0; b < buffer.length(); b++) {
-			this.buffer[b] = (byte) buffer.charAt(b);
-		}
+		consumer.clear();
 
-		this.bufferLength = buffer.length();
+		appendInput(buffer);
 	}
 
+	/**
+	 * Replace any pending input.
+	 */
 	public void setupInput(byte[] buffer) {
-		System.arraycopy(buffer, 0, this.buffer, 0, buffer.length);
+		consumer.clear();
+
+		appendInput(buffer, 0, buffer.length);
+	}
+
+	public void appendInput(String buffer) {
+		byte[] bytes = new byte[buffer.length()];
+		for (int b = 0; b < buffer.length(); b++) {
+			bytes[b] = (byte) buffer.charAt(b);
+		}
+
+		appendInput(bytes, 0, bytes.length);
+	}
 
-		this.bufferLength = buffer.length;
+	/**
+	 * Append input after any pending input.
+	 *
+	 * @return count of bytes actually appended
+	 */
+	public int appendInput(byte[] buffer, int offset, int length) {
+		return consumer.produce(buffer, offset, length);
 	}
 
 	public void assertOutput(String string) {
-		assertEquals(string.length(), this.bufferLength);
+		assertEquals(string.length(), this.outputLength);
 
 		for (int b = 0; b < string.length(); b++) {
-			assertEquals((byte) string.charAt(b), this.buffer[b]);
+			assertEquals((byte) string.charAt(b), this.output[b]);
 		}
 
-		this.bufferLength = 0;
+		this.outputLength = 0;
 	}
 
 	public void assertOutput(byte[] buffer) {
-		assertEquals(buffer.length, this.bufferLength);
+		assertEquals(buffer.length, this.outputLength);
 
 		for (int b = 0; b < buffer.length; b++) {
-			assertEquals(buffer[b], this.buffer[b]);
+			assertEquals(buffer[b], this.output[b]);
 		}
 
-		this.bufferLength = 0;
+		this.outputLength = 0;
 	}
 
 	@Override
-	public void produce(byte[] b) {
-		System.arraycopy(b, 0, buffer, 0, b.length);
-		bufferLength = b.length;
+	public boolean produce(byte[] b) {
+		return produce(b, b.length);
+	}
+
+	@Override
+	public boolean produce(byte[] b, int length) {
+		System.arraycopy(b, 0, output, 0, length);
+		outputLength = length;
+		return true;
+	}
+
+	@Override
+	public int getMaxPacketSize() {
+		return maxPacketSize;
+	}
+
+	@Override
+	public void await(long until) {
 	}
 
 	@Override
 	public Consumer consumer() {
-		return new Consumer() {
-			@Override
-			protected byte[] getBuffer() {
-				return buffer;
-			}
-
-			@Override
-			protected int getBufferLength() {
-				return bufferLength;
-			}
-
-			@Override
-			protected void setBufferLength(int bufferLength) {
-				TestTransfer.this.bufferLength = bufferLength;
-			}
-		};
+		consumer.rewind();
+
+		return consumer;
 	}
 }
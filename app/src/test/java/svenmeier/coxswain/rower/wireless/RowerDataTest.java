@@ -0,0 +1,92 @@
+package svenmeier.coxswain.rower.wireless;
+
+import org.junit.Test;
+
+import svenmeier.coxswain.gym.Measurement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for {@link RowerData}.
+ */
+public class RowerDataTest {
+
+	private static byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int b = 0; b < values.length; b++) {
+			bytes[b] = (byte) values[b];
+		}
+		return bytes;
+	}
+
+	@Test
+	public void complete() {
+		RowerData data = new RowerData();
+
+		// distance, pace, power, energy, heart rate, elapsed time
+		assertTrue(data.decode(bytes(0x2C, 0x0B,
+				0x30, 0x0A, 0x00,
+				0x64, 0x00, 0x00,
+				0x96, 0x00,
+				0x50, 0x00,
+				0x0C, 0x00, 0xFF, 0xFF, 0xFF,
+				0x48,
+				0x3C, 0x00)));
+		assertFalse(data.isMismatch());
+
+		assertEquals(Measurement.STROKE_RATE | Measurement.STROKES | Measurement.DISTANCE | Measurement.SPEED | Measurement.POWER | Measurement.ENERGY | Measurement.PULSE | Measurement.DURATION, data.getPresent());
+
+		Measurement measurement = data.getMeasurement();
+		assertEquals(24, measurement.getStrokeRate());
+		assertEquals(10, measurement.getStrokes());
+		assertEquals(100, measurement.getDistance());
+		assertEquals(333, measurement.getSpeed());
+		assertEquals(80, measurement.getPower());
+		assertEquals(12, measurement.getEnergy());
+		assertEquals(72, measurement.getPulse());
+		assertEquals(60, measurement.getDuration());
+
+		data.clear();
+		assertEquals(0, data.getPresent());
+	}
+
+	@Test
+	public void moreData() {
+		RowerData data = new RowerData();
+
+		// distance, power, elapsed time but no stroke rate and count
+		assertFalse(data.decode(bytes(0x25, 0x08,
+				0x10, 0x27, 0x00,
+				0xF6, 0xFF,
+				0x10, 0x0E)));
+		assertEquals(Measurement.DISTANCE | Measurement.POWER | Measurement.DURATION, data.getPresent());
+
+		// stroke rate and count only
+		assertTrue(data.decode(bytes(0x00, 0x00,
+				0x3C, 0xE8, 0x03)));
+
+		assertEquals(Measurement.STROKE_RATE | Measurement.STROKES | Measurement.DISTANCE | Measurement.POWER | Measurement.DURATION, data.getPresent());
+
+		Measurement measurement = data.getMeasurement();
+		assertEquals(30, measurement.getStrokeRate());
+		assertEquals(1000, measurement.getStrokes());
+		assertEquals(10000, measurement.getDistance());
+		assertEquals(-10, measurement.getPower());
+		assertEquals(3600, measurement.getDuration());
+	}
+
+	@Test
+	public void mismatch() {
+		RowerData data = new RowerData();
+
+		// elapsed time missing
+		assertTrue(data.decode(bytes(0x04, 0x08,
+				0x30, 0x0A, 0x00,
+				0x64, 0x00, 0x00)));
+		assertTrue(data.isMismatch());
+
+		assertEquals(Measurement.STROKE_RATE | Measurement.STROKES | Measurement.DISTANCE, data.getPresent());
+	}
+}